@@ -0,0 +1,47 @@
+package com.bwagih.analyticsservice.controller;
+
+import com.bwagih.analyticsservice.dto.DomainCountDTO;
+import com.bwagih.analyticsservice.dto.PeriodCountDTO;
+import com.bwagih.analyticsservice.dto.RollingCountsDTO;
+import com.bwagih.analyticsservice.service.RegistrationAnalytics;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Patient registration statistics, served from the in-memory {@link RegistrationAnalytics}.
+ */
+@RestController
+@RequestMapping("/registrations")
+public class AnalyticsController {
+
+    private final RegistrationAnalytics registrationAnalytics;
+
+    public AnalyticsController(RegistrationAnalytics registrationAnalytics) {
+        this.registrationAnalytics = registrationAnalytics;
+    }
+
+    @GetMapping("/hourly")
+    public ResponseEntity<List<PeriodCountDTO>> getHourly(@RequestParam(defaultValue = "24") int hours) {
+        return ResponseEntity.ok(registrationAnalytics.hourly(hours));
+    }
+
+    @GetMapping("/daily")
+    public ResponseEntity<List<PeriodCountDTO>> getDaily(@RequestParam(defaultValue = "30") int days) {
+        return ResponseEntity.ok(registrationAnalytics.daily(days));
+    }
+
+    @GetMapping("/domains")
+    public ResponseEntity<List<DomainCountDTO>> getTopDomains(@RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(registrationAnalytics.topDomains(limit));
+    }
+
+    @GetMapping("/rolling")
+    public ResponseEntity<RollingCountsDTO> getRolling() {
+        return ResponseEntity.ok(registrationAnalytics.rolling());
+    }
+}
@@ -0,0 +1,4 @@
+package com.bwagih.analyticsservice.dto;
+
+public record DomainCountDTO(String domain, long count) {
+}
@@ -0,0 +1,9 @@
+package com.bwagih.analyticsservice.dto;
+
+import java.time.Instant;
+
+/**
+ * The registrations of the period starting at {@code start} (an hour or a UTC day).
+ */
+public record PeriodCountDTO(Instant start, long count) {
+}
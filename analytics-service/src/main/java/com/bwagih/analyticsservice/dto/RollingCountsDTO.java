@@ -0,0 +1,7 @@
+package com.bwagih.analyticsservice.dto;
+
+/**
+ * The registrations in the trailing windows, by event time, and since the service started.
+ */
+public record RollingCountsDTO(long lastMinute, long last5Minutes, long last15Minutes, long lastHour, long total) {
+}
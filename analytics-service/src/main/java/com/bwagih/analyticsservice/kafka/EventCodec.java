@@ -0,0 +1,63 @@
+package com.bwagih.analyticsservice.kafka;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+
+import java.io.IOException;
+
+/**
+ * Decodes the record value of one event payload type, the consumer side of the producer's codecs (patient-service).
+ */
+public interface EventCodec<T> {
+
+    Class<T> type();
+
+    String contentType();
+
+    T decode(byte[] bytes) throws IOException;
+
+    /**
+     * The protobuf encoding of a generated message, decoded with the message parser (no Any, no reflection).
+     */
+    static <T extends Message> EventCodec<T> protobuf(Class<T> type, Parser<T> parser) {
+        return new EventCodec<>() {
+            @Override
+            public Class<T> type() {
+                return type;
+            }
+
+            @Override
+            public String contentType() {
+                return EventHeaders.PROTOBUF;
+            }
+
+            @Override
+            public T decode(byte[] bytes) throws IOException {
+                return parser.parseFrom(bytes);
+            }
+        };
+    }
+
+    /**
+     * Binary JSON (smile), the producer's encoding of the payloads without a protobuf message.
+     */
+    static <T> EventCodec<T> smile(Class<T> type, ObjectMapper smileMapper) {
+        return new EventCodec<>() {
+            @Override
+            public Class<T> type() {
+                return type;
+            }
+
+            @Override
+            public String contentType() {
+                return EventHeaders.SMILE;
+            }
+
+            @Override
+            public T decode(byte[] bytes) throws IOException {
+                return smileMapper.readValue(bytes, type);
+            }
+        };
+    }
+}
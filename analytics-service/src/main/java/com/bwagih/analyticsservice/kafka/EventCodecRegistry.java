@@ -0,0 +1,46 @@
+package com.bwagih.analyticsservice.kafka;
+
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.springframework.stereotype.Component;
+import patient.events.PatientEvent;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The decoder of every event type, looked up by the eventType header. The event types without a codec here are
+ * decoded by their contentType header, smile payloads as a generic map. The producer (patient-service) only keeps
+ * the encoding side, the event types and content types are the contract between the two.
+ */
+@Component
+public class EventCodecRegistry {
+
+    public static final String PATIENT_CREATED = "PATIENT_CREATED";
+
+    private final EventCodec<Object> smileFallback = EventCodec.smile(Object.class, new SmileMapper());
+    private final Map<String, EventCodec<?>> codecs = new HashMap<>();
+
+    public EventCodecRegistry() {
+        register(PATIENT_CREATED, EventCodec.protobuf(PatientEvent.class, PatientEvent.parser()));
+    }
+
+    private void register(String eventType, EventCodec<?> codec) {
+        codecs.put(eventType, codec);
+    }
+
+    /**
+     * @return the decoded payload, null when neither the event type nor the content type has a decoder
+     * (a protobuf message of an unknown type cannot be decoded without its class)
+     */
+    public Object decode(String eventType, String contentType, byte[] bytes) throws IOException {
+        EventCodec<?> codec = codecs.get(eventType);
+        if (codec != null) {
+            return codec.decode(bytes);
+        }
+        if (EventHeaders.SMILE.equals(contentType)) {
+            return smileFallback.decode(bytes);
+        }
+        return null;
+    }
+}
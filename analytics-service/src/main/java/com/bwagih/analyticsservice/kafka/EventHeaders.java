@@ -0,0 +1,32 @@
+package com.bwagih.analyticsservice.kafka;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Kafka record headers describing the event in the record value, the value itself is only the encoded payload
+ * and the event time is the record timestamp.
+ * Kept in sync with the producer (patient-service).
+ */
+public final class EventHeaders {
+
+    public static final String EVENT_ID = "eventId";
+    public static final String EVENT_TYPE = "eventType";
+    public static final String CONTENT_TYPE = "contentType";
+
+    public static final String PROTOBUF = "application/x-protobuf";
+    public static final String SMILE = "application/x-jackson-smile";
+
+    private EventHeaders() {
+    }
+
+    /**
+     * @return the header value, null when the record does not have it (sent before the headers were introduced)
+     */
+    public static String value(Headers headers, String key) {
+        Header header = headers.lastHeader(key);
+        return header == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+    }
+}
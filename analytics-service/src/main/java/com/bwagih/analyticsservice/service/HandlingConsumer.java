@@ -1,7 +1,8 @@
 package com.bwagih.analyticsservice.service;
 
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import patient.events.PatientEvent;
 
 public interface HandlingConsumer {
-    public PatientEvent handleEvent(byte[] genericEvent) throws Exception;
+    public PatientEvent handleEvent(ConsumerRecord<String, byte[]> record) throws Exception;
 }
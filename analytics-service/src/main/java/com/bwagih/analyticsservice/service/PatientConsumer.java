@@ -1,43 +1,165 @@
 package com.bwagih.analyticsservice.service;
 
+import com.bwagih.analyticsservice.kafka.EventCodecRegistry;
+import com.bwagih.analyticsservice.kafka.EventHeaders;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.StringValue;
 import events.GenericEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Service;
 import patient.events.PatientEvent;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consumes the patient topic in batches, one container thread per partition (analytics.consumer.concurrency).
+ * The records of a batch are decoded and recorded in parallel chunks, the offsets of the batch are committed
+ * once all of them are processed, a batch failing as a whole is redelivered.
+ */
 @Service
 public class PatientConsumer implements HandlingConsumer {
     private static final Logger log = LoggerFactory.getLogger(PatientConsumer.class);
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final EventCodecRegistry codecRegistry;
+    private final RegistrationAnalytics registrationAnalytics;
+    private final ExecutorService decodeExecutor;
+    private final int decodeChunkSize;
+
+    private final Counter processedCounter;
+    private final Counter skippedCounter;
+    private final DistributionSummary batchSize;
+    private final Timer processToCommitTimer;
+
+    public PatientConsumer(EventCodecRegistry codecRegistry, RegistrationAnalytics registrationAnalytics, MeterRegistry meterRegistry,
+                           @Value("${analytics.consumer.decode-threads:4}") int decodeThreads,
+                           @Value("${analytics.consumer.decode-chunk-size:128}") int decodeChunkSize) {
+        this.codecRegistry = codecRegistry;
+        this.registrationAnalytics = registrationAnalytics;
+        this.decodeChunkSize = decodeChunkSize;
+        this.decodeExecutor = Executors.newFixedThreadPool(decodeThreads, Thread.ofPlatform().name("patient-decode-", 1).factory());
+
+        this.processedCounter = Counter.builder("analytics.kafka.records")
+                .tag("outcome", "processed")
+                .description("Patient records consumed, its rate is the records per second")
+                .register(meterRegistry);
+        this.skippedCounter = Counter.builder("analytics.kafka.records")
+                .tag("outcome", "skipped")
+                .description("Patient records consumed, its rate is the records per second")
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("analytics.kafka.batch.size")
+                .description("Records per consumed batch")
+                .register(meterRegistry);
+        this.processToCommitTimer = Timer.builder("analytics.kafka.batch.process.to.commit")
+                .description("Time from the listener receiving a batch until its offsets are committed, the wait in the poll is not included")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    @KafkaListener(topics = "patient", groupId = "analytics-service", batch = "true",
+            concurrency = "${analytics.consumer.concurrency:3}")
+    public void consumeEvents(List<ConsumerRecord<String, byte[]>> records, Acknowledgment acknowledgment) {
+        long start = System.nanoTime();
+
+        int chunks = (records.size() + decodeChunkSize - 1) / decodeChunkSize;
+        List<CompletableFuture<Void>> decoding = new ArrayList<>(Math.max(chunks - 1, 0));
+        // the first chunk is decoded on the consumer thread, a small batch is not handed over at all
+        for (int chunk = 1; chunk < chunks; chunk++) {
+            List<ConsumerRecord<String, byte[]>> part = records.subList(chunk * decodeChunkSize,
+                    Math.min((chunk + 1) * decodeChunkSize, records.size()));
+            decoding.add(CompletableFuture.runAsync(() -> consume(part), decodeExecutor));
+        }
+        consume(records.subList(0, Math.min(decodeChunkSize, records.size())));
+        CompletableFuture.allOf(decoding.toArray(CompletableFuture[]::new)).join();
+
+        acknowledgment.acknowledge();
+        batchSize.record(records.size());
+        processToCommitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private void consume(List<ConsumerRecord<String, byte[]>> records) {
+        int processed = 0;
+        for (ConsumerRecord<String, byte[]> record : records) {
+            if (consumeEvent(record)) {
+                processed++;
+            }
+        }
+        processedCounter.increment(processed);
+        skippedCounter.increment(records.size() - processed);
+    }
 
-    @KafkaListener(topics = "patient", groupId = "analytics-service")
-    public void consumeEvent(byte[] event) {
+    /**
+     * @return false when the record was skipped (not a patient event or not decodable)
+     */
+    private boolean consumeEvent(ConsumerRecord<String, byte[]> record) {
         try {
-            PatientEvent patientEvent = handleEvent(event);
-            // ... perform any business related to analytics here e.g. save to database for analytics reporting
+            PatientEvent patientEvent = handleEvent(record);
+            if (patientEvent == null) {
+                return false;
+            }
+            registrationAnalytics.record(patientEvent, record.timestamp());
 
-            log.info("Received Patient Event: [PatientId={},PatientName={},PatientEmail={}]",
+            log.debug("Received Patient Event: [PatientId={},PatientName={},PatientEmail={}]",
                     patientEvent.getPatientId(),
                     patientEvent.getName(),
                     patientEvent.getEmail());
+            return true;
 
         } catch (InvalidProtocolBufferException e) {
-            log.error("Error deserializing event {}", e.getMessage());
+            log.error("Error deserializing event at {}-{}@{}: {}", record.topic(), record.partition(), record.offset(), e.getMessage());
         } catch (Exception e) {
-            log.error("Error processing event {}", e.getMessage());
+            log.error("Error processing event at {}-{}@{}: {}", record.topic(), record.partition(), record.offset(), e.getMessage());
         }
+        return false;
     }
 
+    /**
+     * Decodes the record value with the codec of its eventType header, the records without the header
+     * were sent in the old GenericEvent envelope.
+     */
     @Override
-    public PatientEvent handleEvent(byte[] genericEvent) throws Exception {
+    public PatientEvent handleEvent(ConsumerRecord<String, byte[]> record) throws Exception {
+        String eventType = EventHeaders.value(record.headers(), EventHeaders.EVENT_TYPE);
+        if (eventType == null) {
+            return handleGenericEvent(record.value());
+        }
+        log.debug("Received event: [EventId={},EventType={}, Timestamp={} ]",
+                EventHeaders.value(record.headers(), EventHeaders.EVENT_ID),
+                eventType,
+                record.timestamp());
+
+        String contentType = EventHeaders.value(record.headers(), EventHeaders.CONTENT_TYPE);
+        Object payload = codecRegistry.decode(eventType, contentType, record.value());
+        if (payload instanceof PatientEvent patientEvent) {
+            return patientEvent;
+        }
+        if (payload == null) {
+            log.warn("Skipping event of type {}, no decoder for content type {}", eventType, contentType);
+        } else {
+            log.debug("Skipping event of type {}, not a patient event", eventType);
+        }
+        return null;
+    }
+
+    private PatientEvent handleGenericEvent(byte[] genericEvent) throws Exception {
 
         GenericEvent event = GenericEvent.parseFrom(genericEvent);
-        log.info("Received event: [EventId={},EventType={}, Timestamp={} ]",
+        log.debug("Received event: [EventId={},EventType={}, Timestamp={} ]",
                 event.getEventId(),
                 event.getEventType(),
                 event.getTimestamp());
@@ -56,5 +178,8 @@ public class PatientConsumer implements HandlingConsumer {
         return null;
     }
 
-
+    @PreDestroy
+    public void shutdown() {
+        decodeExecutor.shutdown();
+    }
 }
@@ -0,0 +1,133 @@
+package com.bwagih.analyticsservice.service;
+
+import com.bwagih.analyticsservice.dto.DomainCountDTO;
+import com.bwagih.analyticsservice.dto.PeriodCountDTO;
+import com.bwagih.analyticsservice.dto.RollingCountsDTO;
+import com.bwagih.analyticsservice.utils.BucketedCounter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import patient.events.PatientEvent;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory aggregation of the patient registrations, updated by the kafka listener and read by the REST API.
+ * Counts are kept per hour (for the retention) and per second (for the last hour) in {@link BucketedCounter}s,
+ * by event time (the record timestamp), and per email domain in {@link LongAdder}s, recording never takes a lock.
+ * <p>
+ * The counts start empty on every start and a redelivered event is counted again.
+ */
+@Service
+public class RegistrationAnalytics {
+
+    private static final long SECONDS_PER_HOUR = 3600;
+    private static final int HOURS_PER_DAY = 24;
+    private static final String UNKNOWN_DOMAIN = "unknown";
+    private static final String OTHER_DOMAIN = "other";
+
+    private final BucketedCounter hourly;
+    private final BucketedCounter perSecond = new BucketedCounter((int) SECONDS_PER_HOUR);
+    private final Map<String, LongAdder> domains = new ConcurrentHashMap<>();
+    private final LongAdder total = new LongAdder();
+    private final int retentionDays;
+    private final int maxDomains;
+
+    public RegistrationAnalytics(@Value("${analytics.registrations.retention-days:90}") int retentionDays,
+                                 @Value("${analytics.registrations.max-domains:10000}") int maxDomains) {
+        this.retentionDays = retentionDays;
+        this.maxDomains = maxDomains;
+        // one more day so the oldest day is complete whatever the hour
+        this.hourly = new BucketedCounter((retentionDays + 1) * HOURS_PER_DAY);
+    }
+
+    public void record(PatientEvent event, long timestampMs) {
+        long second = Math.floorDiv(timestampMs, 1000L);
+        total.increment();
+        hourly.increment(Math.floorDiv(second, SECONDS_PER_HOUR));
+        perSecond.increment(second);
+        domainCounter(domainOf(event.getEmail())).increment();
+    }
+
+    private LongAdder domainCounter(String domain) {
+        LongAdder counter = domains.get(domain);
+        if (counter != null) {
+            return counter;
+        }
+        // the number of domains is bounded, the domains seen once the limit is reached are counted together
+        return domains.computeIfAbsent(domains.size() < maxDomains ? domain : OTHER_DOMAIN, key -> new LongAdder());
+    }
+
+    private static String domainOf(String email) {
+        int at = email == null ? -1 : email.lastIndexOf('@');
+        if (at < 0 || at == email.length() - 1) {
+            return UNKNOWN_DOMAIN;
+        }
+        return email.substring(at + 1).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The registrations of the last hours, oldest first, the current hour included.
+     */
+    public List<PeriodCountDTO> hourly(int hours) {
+        long now = currentSecond() / SECONDS_PER_HOUR;
+        int count = Math.clamp(hours, 1, retentionDays * HOURS_PER_DAY);
+        List<PeriodCountDTO> counts = new ArrayList<>(count);
+        for (long hour = now - count + 1; hour <= now; hour++) {
+            counts.add(new PeriodCountDTO(Instant.ofEpochSecond(hour * SECONDS_PER_HOUR), hourly.get(hour)));
+        }
+        return counts;
+    }
+
+    /**
+     * The registrations of the last UTC days, oldest first, today included.
+     */
+    public List<PeriodCountDTO> daily(int days) {
+        long today = currentSecond() / SECONDS_PER_HOUR / HOURS_PER_DAY;
+        int count = Math.clamp(days, 1, retentionDays);
+        List<PeriodCountDTO> counts = new ArrayList<>(count);
+        for (long day = today - count + 1; day <= today; day++) {
+            long firstHour = day * HOURS_PER_DAY;
+            counts.add(new PeriodCountDTO(Instant.ofEpochSecond(firstHour * SECONDS_PER_HOUR),
+                    hourly.sum(firstHour, firstHour + HOURS_PER_DAY - 1)));
+        }
+        return counts;
+    }
+
+    /**
+     * The email domains with the most registrations, most first.
+     */
+    public List<DomainCountDTO> topDomains(int limit) {
+        int count = Math.clamp(limit, 1, maxDomains);
+        // keeps the top entries only, the smallest on top to be replaced
+        PriorityQueue<DomainCountDTO> top = new PriorityQueue<>(count + 1, Comparator.comparingLong(DomainCountDTO::count));
+        domains.forEach((domain, counter) -> {
+            long registrations = counter.sum();
+            if (top.size() < count) {
+                top.add(new DomainCountDTO(domain, registrations));
+            } else if (top.peek().count() < registrations) {
+                top.poll();
+                top.add(new DomainCountDTO(domain, registrations));
+            }
+        });
+        List<DomainCountDTO> domainCounts = new ArrayList<>(top);
+        domainCounts.sort(Comparator.comparingLong(DomainCountDTO::count).reversed());
+        return domainCounts;
+    }
+
+    public RollingCountsDTO rolling() {
+        long now = currentSecond();
+        return new RollingCountsDTO(
+                perSecond.sum(now - 59, now),
+                perSecond.sum(now - 299, now),
+                perSecond.sum(now - 899, now),
+                perSecond.sum(now - SECONDS_PER_HOUR + 1, now),
+                total.sum());
+    }
+
+    private static long currentSecond() {
+        return System.currentTimeMillis() / 1000L;
+    }
+}
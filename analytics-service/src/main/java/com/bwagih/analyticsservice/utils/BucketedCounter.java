@@ -0,0 +1,71 @@
+package com.bwagih.analyticsservice.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Event counts per period (an hour, a second, ...) for the last {@code periods} periods, in a ring of longs.
+ * Each slot packs the period number in the high 32 bits and its count in the low 32 bits, so an increment is a
+ * single CAS and a slot is taken over by the first event of a newer period without a lock or a separate reset.
+ * Events older than the ring are dropped.
+ */
+public final class BucketedCounter {
+
+    private static final int COUNT_BITS = 32;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private final AtomicLongArray slots;
+
+    public BucketedCounter(int periods) {
+        this.slots = new AtomicLongArray(periods);
+    }
+
+    public int periods() {
+        return slots.length();
+    }
+
+    /**
+     * @return false when the period is older than the periods kept in the ring
+     */
+    public boolean increment(long period) {
+        int index = index(period);
+        while (true) {
+            long value = slots.get(index);
+            long slotPeriod = value >>> COUNT_BITS;
+            long next;
+            if (slotPeriod == period) {
+                if ((value & COUNT_MASK) == COUNT_MASK) {
+                    // saturated, the count stays at its maximum
+                    return true;
+                }
+                next = value + 1;
+            } else if (slotPeriod < period) {
+                next = (period << COUNT_BITS) | 1;
+            } else {
+                return false;
+            }
+            if (slots.compareAndSet(index, value, next)) {
+                return true;
+            }
+        }
+    }
+
+    public long get(long period) {
+        long value = slots.get(index(period));
+        return value >>> COUNT_BITS == period ? value & COUNT_MASK : 0;
+    }
+
+    /**
+     * The sum of the periods from and to (both included), limited to the periods kept in the ring.
+     */
+    public long sum(long from, long to) {
+        long sum = 0;
+        for (long period = Math.max(from, to - slots.length() + 1); period <= to; period++) {
+            sum += get(period);
+        }
+        return sum;
+    }
+
+    private int index(long period) {
+        return (int) Math.floorMod(period, (long) slots.length());
+    }
+}
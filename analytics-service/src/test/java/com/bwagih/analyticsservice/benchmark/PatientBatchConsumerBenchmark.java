@@ -0,0 +1,74 @@
+package com.bwagih.analyticsservice.benchmark;
+
+import ch.qos.logback.classic.Level;
+import com.bwagih.analyticsservice.kafka.EventCodecRegistry;
+import com.bwagih.analyticsservice.kafka.EventHeaders;
+import com.bwagih.analyticsservice.service.PatientConsumer;
+import com.bwagih.analyticsservice.service.RegistrationAnalytics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+import patient.events.PatientEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PatientConsumer.consumeEvents on a full poll (500 records), decoded on the consumer thread alone
+ * (one chunk of 500) against chunks of 128 spread over the decode pool. The commit is stubbed out.
+ * Run with: ./mvnw -Pbenchmark test-compile exec:exec -Djmh.include=PatientBatchConsumerBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PatientBatchConsumerBenchmark {
+
+    private static final int BATCH_SIZE = 500;
+
+    @Param({"500", "128"})
+    private int decodeChunkSize;
+
+    private PatientConsumer patientConsumer;
+    private List<ConsumerRecord<String, byte[]>> batch;
+
+    @Setup
+    public void setup() {
+        // logging is turned down so the benchmark measures the decoding instead of console I/O
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+
+        patientConsumer = new PatientConsumer(new EventCodecRegistry(), new RegistrationAnalytics(90, 10000),
+                new SimpleMeterRegistry(), 4, decodeChunkSize);
+        batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            PatientEvent patientEvent = PatientEvent.newBuilder()
+                    .setPatientId("123e4567-e89b-12d3-a456-42661417" + String.format("%04d", i))
+                    .setName("John Doe " + i)
+                    .setEmail("john.doe" + i + "@domain" + (i % 20) + ".example.com")
+                    .build();
+            ConsumerRecord<String, byte[]> record = new ConsumerRecord<>("patient", 0, i, patientEvent.getPatientId(),
+                    patientEvent.toByteArray());
+            record.headers()
+                    .add(EventHeaders.EVENT_ID, String.valueOf(i).getBytes(StandardCharsets.UTF_8))
+                    .add(EventHeaders.EVENT_TYPE, EventCodecRegistry.PATIENT_CREATED.getBytes(StandardCharsets.UTF_8))
+                    .add(EventHeaders.CONTENT_TYPE, EventHeaders.PROTOBUF.getBytes(StandardCharsets.UTF_8));
+            batch.add(record);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        patientConsumer.shutdown();
+    }
+
+    @Benchmark
+    public void consumeBatch() {
+        patientConsumer.consumeEvents(batch, () -> {
+        });
+    }
+}
@@ -0,0 +1,99 @@
+package com.bwagih.analyticsservice.benchmark;
+
+import ch.qos.logback.classic.Level;
+import com.bwagih.analyticsservice.kafka.EventCodecRegistry;
+import com.bwagih.analyticsservice.kafka.EventHeaders;
+import com.bwagih.analyticsservice.service.PatientConsumer;
+import com.bwagih.analyticsservice.service.RegistrationAnalytics;
+import com.google.protobuf.Any;
+import com.google.protobuf.StringValue;
+import events.GenericEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+import patient.events.PatientEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PatientConsumer.handleEvent for a PatientEvent selected by the eventType header, against the old
+ * GenericEvent envelope with a packed PatientEvent and with a JSON document wrapped in a StringValue.
+ * Run with: ./mvnw -Pbenchmark test-compile exec:exec -Djmh.include=PatientConsumerBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PatientConsumerBenchmark {
+
+    private PatientConsumer patientConsumer;
+    private ConsumerRecord<String, byte[]> headerEvent;
+    private ConsumerRecord<String, byte[]> protobufEvent;
+    private ConsumerRecord<String, byte[]> jsonEvent;
+
+    @Setup
+    public void setup() {
+        // logging is turned down so the benchmark measures the decoding instead of console I/O
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+
+        patientConsumer = new PatientConsumer(new EventCodecRegistry(), new RegistrationAnalytics(90, 10000),
+                new SimpleMeterRegistry(), 1, 128);
+        PatientEvent patientEvent = PatientEvent.newBuilder()
+                .setPatientId("123e4567-e89b-12d3-a456-426614174000")
+                .setName("John Doe")
+                .setEmail("john.doe@example.com")
+                .build();
+        headerEvent = record(patientEvent.toByteArray());
+        headerEvent.headers()
+                .add(EventHeaders.EVENT_ID, "42".getBytes(StandardCharsets.UTF_8))
+                .add(EventHeaders.EVENT_TYPE, EventCodecRegistry.PATIENT_CREATED.getBytes(StandardCharsets.UTF_8))
+                .add(EventHeaders.CONTENT_TYPE, EventHeaders.PROTOBUF.getBytes(StandardCharsets.UTF_8));
+        protobufEvent = envelope(Any.pack(patientEvent));
+        jsonEvent = envelope(Any.pack(StringValue.of(
+                "{\"patientId\":\"123e4567-e89b-12d3-a456-426614174000\",\"name\":\"John Doe\",\"email\":\"john.doe@example.com\"}")));
+    }
+
+    @TearDown
+    public void tearDown() {
+        patientConsumer.shutdown();
+    }
+
+    private static ConsumerRecord<String, byte[]> record(byte[] value) {
+        return new ConsumerRecord<>("patient", 0, 0L, "123e4567-e89b-12d3-a456-426614174000", value);
+    }
+
+    private static ConsumerRecord<String, byte[]> envelope(Any payload) {
+        return record(GenericEvent.newBuilder()
+                .setEventId("7f1c2b1e-3c4d-4e5f-8a9b-0c1d2e3f4a5b")
+                .setEventType("PATIENT_CREATED")
+                .setTimestamp(1_700_000_000_000L)
+                .setPayload(payload)
+                .build()
+                .toByteArray());
+    }
+
+    @Benchmark
+    public Object handleHeaderEvent() throws Exception {
+        return patientConsumer.handleEvent(headerEvent);
+    }
+
+    @Benchmark
+    public Object handleProtobufEvent() throws Exception {
+        return patientConsumer.handleEvent(protobufEvent);
+    }
+
+    @Benchmark
+    public Object handleJsonEvent() {
+        // a payload that cannot be bound is returned instead of thrown so it shows up in the numbers
+        // (and the allocation rate) instead of aborting the run
+        try {
+            return patientConsumer.handleEvent(jsonEvent);
+        } catch (Exception e) {
+            return e;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.bwagih.analyticsservice.benchmark;
+
+import com.bwagih.analyticsservice.service.RegistrationAnalytics;
+import org.openjdk.jmh.annotations.*;
+import patient.events.PatientEvent;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RegistrationAnalytics under concurrent ingestion: four threads recording events (spread over 500 email
+ * domains and the last day) while one thread runs the queries of the REST API.
+ * Run with: ./mvnw -Pbenchmark test-compile exec:exec -Djmh.include=RegistrationAnalyticsBenchmark
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RegistrationAnalyticsBenchmark {
+
+    private static final int DOMAINS = 500;
+
+    private RegistrationAnalytics registrationAnalytics;
+    private PatientEvent[] events;
+
+    @Setup
+    public void setup() {
+        registrationAnalytics = new RegistrationAnalytics(90, 10000);
+        events = new PatientEvent[DOMAINS];
+        for (int i = 0; i < DOMAINS; i++) {
+            events[i] = PatientEvent.newBuilder()
+                    .setPatientId("123e4567-e89b-12d3-a456-426614174000")
+                    .setName("John Doe")
+                    .setEmail("john.doe@domain" + i + ".example.com")
+                    .build();
+        }
+    }
+
+    @Benchmark
+    @Group("ingestion")
+    @GroupThreads(4)
+    public void record() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        registrationAnalytics.record(events[random.nextInt(DOMAINS)],
+                System.currentTimeMillis() - random.nextLong(TimeUnit.DAYS.toMillis(1)));
+    }
+
+    @Benchmark
+    @Group("ingestion")
+    @GroupThreads(1)
+    public Object query() {
+        return switch (ThreadLocalRandom.current().nextInt(4)) {
+            case 0 -> registrationAnalytics.hourly(24);
+            case 1 -> registrationAnalytics.daily(30);
+            case 2 -> registrationAnalytics.topDomains(10);
+            default -> registrationAnalytics.rolling();
+        };
+    }
+}
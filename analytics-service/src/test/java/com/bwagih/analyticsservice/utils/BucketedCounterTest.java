@@ -0,0 +1,74 @@
+package com.bwagih.analyticsservice.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BucketedCounterTest {
+
+    @Test
+    void newerPeriodTakesTheSlotOverFromZero() {
+        BucketedCounter counter = new BucketedCounter(4);
+        counter.increment(1);
+        counter.increment(1);
+
+        // period 5 lands on the slot of period 1
+        assertThat(counter.increment(5)).isTrue();
+
+        assertThat(counter.get(5)).isEqualTo(1);
+        assertThat(counter.get(1)).isZero();
+    }
+
+    @Test
+    void periodOlderThanTheRingIsDropped() {
+        BucketedCounter counter = new BucketedCounter(4);
+        counter.increment(5);
+
+        assertThat(counter.increment(1)).isFalse();
+
+        assertThat(counter.get(5)).isEqualTo(1);
+        assertThat(counter.get(1)).isZero();
+    }
+
+    @Test
+    void sumOnlyCoversThePeriodsKeptInTheRing() {
+        BucketedCounter counter = new BucketedCounter(4);
+        for (long period = 0; period < 6; period++) {
+            for (int i = 0; i <= period; i++) {
+                counter.increment(period);
+            }
+        }
+
+        // periods 2 to 5 are kept, 0 and 1 were rolled over
+        assertThat(counter.sum(0, 5)).isEqualTo(3 + 4 + 5 + 6);
+        assertThat(counter.sum(4, 5)).isEqualTo(5 + 6);
+        // the window of a sum up to period 6 starts at period 3
+        assertThat(counter.sum(0, 6)).isEqualTo(4 + 5 + 6);
+    }
+
+    @Test
+    void concurrentIncrementsAcrossARolloverAreNotLost() throws InterruptedException {
+        BucketedCounter counter = new BucketedCounter(2);
+        counter.increment(0);
+
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        try {
+            IntStream.range(0, 4).forEach(thread -> threads.execute(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    counter.increment(2);
+                }
+            }));
+        } finally {
+            threads.shutdown();
+            assertThat(threads.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        }
+
+        assertThat(counter.get(2)).isEqualTo(40_000);
+        assertThat(counter.get(0)).isZero();
+    }
+}
@@ -0,0 +1,44 @@
+package com.bwagih.apigateway.loadtest;
+
+import com.bwagih.apigateway.ApiGatewayApplication;
+import org.springframework.boot.SpringApplication;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * api-gateway routing to the auth-service and patient-service started locally for the load test (load-test/LoadTest.java).
+ * Only the auth and patient routes are defined, a route list set here replaces the one of application.yml.
+ * Not a unit test, start it from the api-gateway directory with:
+ * <pre>
+ * ./mvnw spring-boot:test-run -Dspring-boot.run.main-class=com.bwagih.apigateway.loadtest.LocalApiGatewayApplication
+ * </pre>
+ */
+public class LocalApiGatewayApplication {
+
+    private static final String ROUTES = "spring.cloud.gateway.server.webflux.routes";
+
+    public static void main(String[] args) {
+        Map<String, String> properties = Map.ofEntries(
+                Map.entry("auth.service.url", "http://localhost:4006/auth"),
+                Map.entry("logging.level.org.springframework.cloud.gateway", "INFO"),
+
+                Map.entry(ROUTES + "[0].id", "auth-service-route"),
+                Map.entry(ROUTES + "[0].uri", "http://localhost:4006"),
+                Map.entry(ROUTES + "[0].predicates[0]", "Path=/auth/**"),
+                Map.entry(ROUTES + "[0].filters[0]", "StripPrefix=1"),
+
+                Map.entry(ROUTES + "[1].id", "patient-service-route"),
+                Map.entry(ROUTES + "[1].uri", "http://localhost:4000"),
+                Map.entry(ROUTES + "[1].predicates[0]", "Path=/patient/**"),
+                Map.entry(ROUTES + "[1].filters[0]", "StripPrefix=1"),
+                Map.entry(ROUTES + "[1].filters[1]", "JwtValidation"));
+
+        // passed as command line arguments so they take precedence over the application properties
+        String[] arguments = Stream.concat(
+                properties.entrySet().stream().map(property -> "--" + property.getKey() + "=" + property.getValue()),
+                Arrays.stream(args)).toArray(String[]::new);
+        SpringApplication.run(ApiGatewayApplication.class, arguments);
+    }
+}
@@ -0,0 +1,45 @@
+package com.bwagih.authservice.benchmark;
+
+import com.bwagih.authservice.utils.JwtUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token issuing (login) and validation (every request through the gateway).
+ * Run with: ./mvnw -Pbenchmark test-compile exec:exec -Djmh.include=JwtUtilBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtUtilBenchmark {
+
+    private JwtUtil jwtUtil;
+    private String token;
+
+    @Setup
+    public void setup() {
+        // a 512 bit key makes JwtUtil sign with HS512
+        byte[] secret = new byte[64];
+        for (int i = 0; i < secret.length; i++) {
+            secret[i] = (byte) (i * 31 + 7);
+        }
+        jwtUtil = new JwtUtil(Base64.getEncoder().encodeToString(secret));
+        token = jwtUtil.generateToken("testuser@test.com", "ADMIN");
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtUtil.generateToken("testuser@test.com", "ADMIN");
+    }
+
+    @Benchmark
+    public String validateToken() {
+        jwtUtil.validateToken(token);
+        return token;
+    }
+}
@@ -0,0 +1,40 @@
+package com.bwagih.authservice.loadtest;
+
+import com.bwagih.authservice.AuthServiceApplication;
+import org.springframework.boot.SpringApplication;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * auth-service on a fully local stack for the load test (load-test/LoadTest.java):
+ * in-memory H2 initialized from data.sql (testuser@test.com / password123) and a random signing key per run.
+ * Not a unit test, start it from the auth-service directory with:
+ * <pre>
+ * ./mvnw spring-boot:test-run -Dspring-boot.run.main-class=com.bwagih.authservice.loadtest.LocalAuthServiceApplication
+ * </pre>
+ */
+public class LocalAuthServiceApplication {
+
+    public static void main(String[] args) {
+        byte[] secret = new byte[64];
+        new SecureRandom().nextBytes(secret);
+
+        Map<String, String> properties = Map.of(
+                "spring.datasource.url", "jdbc:h2:mem:auth;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                "spring.datasource.username", "sa",
+                "spring.datasource.password", "",
+                "spring.jpa.hibernate.ddl-auto", "none",
+                "spring.sql.init.mode", "always",
+                "jwt.secret", Base64.getEncoder().encodeToString(secret));
+
+        // passed as command line arguments so they take precedence over the application properties
+        String[] arguments = Stream.concat(
+                properties.entrySet().stream().map(property -> "--" + property.getKey() + "=" + property.getValue()),
+                Arrays.stream(args)).toArray(String[]::new);
+        SpringApplication.run(AuthServiceApplication.class, arguments);
+    }
+}
@@ -0,0 +1,325 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Open-loop load generator replaying the api-requests flows through the gateway:
+ * login -> validate -> create -> get -> update -> delete patient.
+ * <p>
+ * Flows start at a constant arrival rate whatever the response times are, so a slow system builds up
+ * in-flight flows instead of silently lowering the offered load. Flow latency is measured from the
+ * scheduled start time (no coordinated omission), route latency from the moment the request is sent.
+ * <p>
+ * Local stack, each in its own terminal (see the Local*Application classes under src/test/java/.../loadtest):
+ * <pre>
+ * (cd auth-service &amp;&amp; ./mvnw spring-boot:test-run -Dspring-boot.run.main-class=com.bwagih.authservice.loadtest.LocalAuthServiceApplication)
+ * (cd patient-service &amp;&amp; ./mvnw spring-boot:test-run -Dspring-boot.run.main-class=com.bwagih.patientservice.loadtest.LocalPatientServiceApplication)
+ * (cd api-gateway &amp;&amp; ./mvnw spring-boot:test-run -Dspring-boot.run.main-class=com.bwagih.apigateway.loadtest.LocalApiGatewayApplication)
+ * java load-test/LoadTest.java --rate 50 --duration 60 --out load-test/results.json
+ * </pre>
+ * Options: --base-url (default http://localhost:4005/gateway), --rate (flows per second, default 20),
+ * --duration (measured seconds, default 60), --warmup (unmeasured seconds before, default 10),
+ * --login-ratio (share of flows that log in again instead of reusing the token, default 0.05),
+ * --timeout-ms (per request, default 5000), --max-in-flight (flows, default 10000, arrivals above it count as dropped)
+ * and --out (json report file, default: stdout only).
+ */
+public class LoadTest {
+
+    private static final Pattern TOKEN = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"");
+    private static final Pattern PATIENT_ID = Pattern.compile("\"result\"\\s*:\\s*\"([0-9a-fA-F-]{36})\"");
+    private static final List<String> ROUTES = List.of("login", "validate", "createPatient", "getPatient", "updatePatient", "deletePatient", "flow");
+
+    private final Map<String, String> options;
+    private final String baseUrl;
+    private final Duration timeout;
+    private final double loginRatio;
+    private final HttpClient client;
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong patientSequence = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Map<String, RouteStats> stats = new ConcurrentHashMap<>();
+
+    private volatile String token;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new TreeMap<>(Map.of(
+                "base-url", "http://localhost:4005/gateway",
+                "rate", "20",
+                "duration", "60",
+                "warmup", "10",
+                "login-ratio", "0.05",
+                "timeout-ms", "5000",
+                "max-in-flight", "10000"));
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        new LoadTest(options).run();
+    }
+
+    private LoadTest(Map<String, String> options) {
+        this.options = options;
+        this.baseUrl = options.get("base-url");
+        this.timeout = Duration.ofMillis(Long.parseLong(options.get("timeout-ms")));
+        this.loginRatio = Double.parseDouble(options.get("login-ratio"));
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        ROUTES.forEach(route -> stats.put(route, new RouteStats()));
+    }
+
+    private void run() throws IOException {
+        double rate = Double.parseDouble(options.get("rate"));
+        long warmupNanos = (long) (Double.parseDouble(options.get("warmup")) * 1e9);
+        long durationNanos = (long) (Double.parseDouble(options.get("duration")) * 1e9);
+        int maxInFlight = Integer.parseInt(options.get("max-in-flight"));
+        long intervalNanos = (long) (1e9 / rate);
+
+        System.err.printf("Offering %.1f flows/s to %s, %ds warmup + %ds measured%n",
+                rate, baseUrl, warmupNanos / 1_000_000_000, durationNanos / 1_000_000_000);
+
+        long startedAt = System.nanoTime();
+        long measureFrom = startedAt + warmupNanos;
+        long endAt = measureFrom + durationNanos;
+        try (ExecutorService flows = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long arrival = 0; ; arrival++) {
+                long scheduledAt = startedAt + arrival * intervalNanos;
+                if (scheduledAt >= endAt) {
+                    break;
+                }
+                long wait = scheduledAt - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                boolean measured = scheduledAt >= measureFrom;
+                if (inFlight.get() >= maxInFlight) {
+                    if (measured) {
+                        dropped.incrementAndGet();
+                    }
+                    continue;
+                }
+                inFlight.incrementAndGet();
+                flows.execute(() -> {
+                    try {
+                        runFlow(scheduledAt, measured);
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                });
+            }
+        }
+
+        String report = report(durationNanos / 1e9);
+        System.out.println(report);
+        String out = options.get("out");
+        if (out != null) {
+            Files.writeString(Path.of(out), report);
+            System.err.println("Report written to " + out);
+        }
+    }
+
+    private void runFlow(long scheduledAt, boolean measured) {
+        boolean ok = flow(measured);
+        if (measured) {
+            stats.get("flow").record(System.nanoTime() - scheduledAt, ok ? 200 : 0, ok);
+        }
+    }
+
+    private boolean flow(boolean measured) {
+        if (token == null || ThreadLocalRandom.current().nextDouble() < loginRatio) {
+            Response login = call("login", measured, request("/auth/login", false)
+                    .POST(json("{\"email\":\"testuser@test.com\",\"password\":\"password123\"}")));
+            String newToken = login.find(TOKEN);
+            if (newToken == null) {
+                return false;
+            }
+            token = newToken;
+        }
+
+        if (!call("validate", measured, request("/auth/validate", true).GET()).ok()) {
+            return false;
+        }
+
+        String email = "loadtest-" + runId + "-" + patientSequence.incrementAndGet() + "@example.com";
+        Response created = call("createPatient", measured, request("/patient/patients", true).POST(json("""
+                {"name":"load test","email":"%s","address":"123 Main St","dateOfBirth":"1990-01-01","registeredDate":"2022-01-01"}"""
+                .formatted(email))));
+        String id = created.find(PATIENT_ID);
+        if (id == null) {
+            return false;
+        }
+
+        boolean ok = call("getPatient", measured, request("/patient/patients/" + id, true).GET()).ok();
+        ok &= call("updatePatient", measured, request("/patient/patients/" + id, true).PUT(json("""
+                {"name":"load test updated","email":"%s","address":"456 Main St","dateOfBirth":"1990-01-01"}"""
+                .formatted(email)))).ok();
+        ok &= call("deletePatient", measured, request("/patient/patients/" + id, true).DELETE()).ok();
+        return ok;
+    }
+
+    private HttpRequest.Builder request(String path, boolean authenticated) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(timeout)
+                .header("Content-Type", "application/json");
+        if (authenticated) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        return builder;
+    }
+
+    private static HttpRequest.BodyPublisher json(String body) {
+        return HttpRequest.BodyPublishers.ofString(body);
+    }
+
+    private Response call(String route, boolean measured, HttpRequest.Builder request) {
+        long sentAt = System.nanoTime();
+        Response response;
+        try {
+            HttpResponse<String> httpResponse = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+            response = new Response(httpResponse.statusCode(), httpResponse.body());
+        } catch (IOException e) {
+            response = new Response(0, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            response = new Response(0, null);
+        }
+        if (measured) {
+            stats.get(route).record(System.nanoTime() - sentAt, response.status(), response.ok());
+        }
+        return response;
+    }
+
+    /**
+     * Status 0 stands for a transport error or a timeout.
+     */
+    private record Response(int status, String body) {
+
+        boolean ok() {
+            return status >= 200 && status < 300;
+        }
+
+        String find(Pattern pattern) {
+            if (!ok() || body == null) {
+                return null;
+            }
+            Matcher matcher = pattern.matcher(body);
+            return matcher.find() ? matcher.group(1) : null;
+        }
+    }
+
+    private static final class RouteStats {
+
+        private long[] latencies = new long[1024];
+        private int count;
+        private long errors;
+        private final Map<Integer, Long> statuses = new TreeMap<>();
+
+        synchronized void record(long latencyNanos, int status, boolean ok) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latencyNanos;
+            if (!ok) {
+                errors++;
+            }
+            statuses.merge(status, 1L, Long::sum);
+        }
+    }
+
+    // hand-written json keeps the generator a single dependency-free file
+    private String report(double durationSeconds) {
+        StringBuilder json = new StringBuilder("{\n");
+        json.append("  \"runId\": \"").append(runId).append("\",\n");
+        json.append("  \"options\": {");
+        StringJoiner optionsJson = new StringJoiner(", ");
+        options.forEach((key, value) -> optionsJson.add("\"" + key + "\": \"" + value + "\""));
+        json.append(optionsJson).append("},\n");
+        json.append("  \"durationSeconds\": ").append(number(durationSeconds)).append(",\n");
+        json.append("  \"droppedFlows\": ").append(dropped.get()).append(",\n");
+        json.append("  \"routes\": {\n");
+
+        StringJoiner routes = new StringJoiner(",\n");
+        for (String route : ROUTES) {
+            RouteStats routeStats = stats.get(route);
+            synchronized (routeStats) {
+                routes.add("    \"" + route + "\": " + routeReport(routeStats, durationSeconds));
+            }
+        }
+        json.append(routes).append("\n  }\n}");
+        return json.toString();
+    }
+
+    private static String routeReport(RouteStats routeStats, double durationSeconds) {
+        long[] sorted = Arrays.copyOf(routeStats.latencies, routeStats.count);
+        Arrays.sort(sorted);
+
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"requests\": ").append(sorted.length);
+        json.append(", \"errors\": ").append(routeStats.errors);
+        json.append(", \"errorRate\": ").append(number(sorted.length == 0 ? 0 : (double) routeStats.errors / sorted.length));
+        json.append(", \"throughputPerSecond\": ").append(number(sorted.length / durationSeconds));
+
+        json.append(", \"latencyMs\": {");
+        if (sorted.length > 0) {
+            json.append("\"min\": ").append(millis(sorted[0]));
+            json.append(", \"mean\": ").append(number(Arrays.stream(sorted).average().orElse(0) / 1e6));
+            json.append(", \"p50\": ").append(millis(percentile(sorted, 0.50)));
+            json.append(", \"p95\": ").append(millis(percentile(sorted, 0.95)));
+            json.append(", \"p99\": ").append(millis(percentile(sorted, 0.99)));
+            json.append(", \"p999\": ").append(millis(percentile(sorted, 0.999)));
+            json.append(", \"max\": ").append(millis(sorted[sorted.length - 1]));
+        }
+        json.append("}");
+
+        // cumulative counts per power of two millisecond bucket, the last bucket holds everything above
+        json.append(", \"histogram\": [");
+        StringJoiner buckets = new StringJoiner(", ");
+        int index = 0;
+        for (long upperMs = 1; upperMs <= 65_536 && index < sorted.length; upperMs *= 2) {
+            while (index < sorted.length && sorted[index] <= upperMs * 1_000_000) {
+                index++;
+            }
+            buckets.add("{\"leMs\": " + upperMs + ", \"count\": " + index + "}");
+        }
+        if (index < sorted.length) {
+            buckets.add("{\"leMs\": \"+Inf\", \"count\": " + sorted.length + "}");
+        }
+        json.append(buckets).append("]");
+
+        json.append(", \"statusCodes\": {");
+        StringJoiner statuses = new StringJoiner(", ");
+        routeStats.statuses.forEach((status, count) -> statuses.add("\"" + status + "\": " + count));
+        json.append(statuses).append("}}");
+        return json.toString();
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static String millis(long nanos) {
+        return number(nanos / 1e6);
+    }
+
+    private static String number(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+}
@@ -0,0 +1,18 @@
+package com.bwagih.patientservice.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.protobuf.ProtobufHttpMessageConverter;
+
+/**
+ * Reads and writes generated protobuf messages as application/x-protobuf,
+ * picked up by spring boot next to the default (jackson) converters.
+ */
+@Configuration
+public class ProtobufConfig {
+
+    @Bean
+    public ProtobufHttpMessageConverter protobufHttpMessageConverter() {
+        return new ProtobufHttpMessageConverter();
+    }
+}
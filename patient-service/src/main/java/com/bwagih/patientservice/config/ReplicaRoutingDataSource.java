@@ -0,0 +1,206 @@
+package com.bwagih.patientservice.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Sends the connections of read-only transactions to a replica and everything else to the primary.
+ * Must sit behind a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}, the transaction
+ * is only marked read-only after it began so the real connection has to be fetched on the first statement.
+ * <p>
+ * Replicas behind by more than the lag threshold (or failing the lag query) are skipped until they catch up,
+ * with no replica available the reads go to the primary. Once a request thread wrote, its reads stay on the primary
+ * until {@link #clearWritePin()} (the end of the request) so they see their own writes. Outside a request
+ * (schedulers, relay workers, callbacks) nothing would clear it, there the pin ends with the transaction.
+ * Reads whose result outlives the request (cache loads) go through {@link #readFromPrimary(Supplier)}, a row read
+ * from a lagging replica right after an eviction would otherwise be cached until it expires.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    public enum Selection {
+        ROUND_ROBIN, LEAST_CONNECTIONS
+    }
+
+    private static final ThreadLocal<Boolean> WRITE_PIN = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> PRIMARY_READ = new ThreadLocal<>();
+
+    private final HikariDataSource primary;
+    private final List<Replica> replicas;
+    private final Selection selection;
+    private final long maxLagMs;
+    private final String lagQuery;
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final Counter primaryCounter;
+    private final Counter replicaCounter;
+
+    public ReplicaRoutingDataSource(HikariDataSource primary, List<HikariDataSource> replicas, Selection selection,
+                                    long maxLagMs, String lagQuery, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replicas = replicas.stream().map(Replica::new).toList();
+        this.selection = selection;
+        this.maxLagMs = maxLagMs;
+        this.lagQuery = lagQuery;
+
+        for (Replica replica : this.replicas) {
+            Gauge.builder("patient.datasource.replica.lag", replica, r -> r.lagMs)
+                    .tag("replica", replica.dataSource.getPoolName())
+                    .description("Replication lag of the replica in milliseconds, -1 while it cannot be checked")
+                    .register(meterRegistry);
+        }
+        this.primaryCounter = Counter.builder("patient.datasource.routed")
+                .tag("target", "primary")
+                .description("Connections handed out by the read replica routing")
+                .register(meterRegistry);
+        this.replicaCounter = Counter.builder("patient.datasource.routed")
+                .tag("target", "replica")
+                .description("Connections handed out by the read replica routing")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return determineTarget().getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return determineTarget().getConnection(username, password);
+    }
+
+    private HikariDataSource determineTarget() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (TransactionSynchronizationManager.isActualTransactionActive() && WRITE_PIN.get() == null) {
+                pinToPrimary();
+            }
+            primaryCounter.increment();
+            return primary;
+        }
+        if (WRITE_PIN.get() != null || PRIMARY_READ.get() != null) {
+            primaryCounter.increment();
+            return primary;
+        }
+
+        Replica replica = selectReplica();
+        if (replica == null) {
+            primaryCounter.increment();
+            return primary;
+        }
+        replicaCounter.increment();
+        return replica.dataSource;
+    }
+
+    private static void pinToPrimary() {
+        WRITE_PIN.set(Boolean.TRUE);
+        if (RequestContextHolder.getRequestAttributes() == null && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    clearWritePin();
+                }
+            });
+        }
+    }
+
+    private Replica selectReplica() {
+        List<Replica> available = replicas.stream().filter(replica -> replica.available).toList();
+        if (available.isEmpty()) {
+            return null;
+        }
+        if (selection == Selection.LEAST_CONNECTIONS) {
+            return available.stream().min(Comparator.comparingInt(Replica::activeConnections)).orElseThrow();
+        }
+        return available.get(Math.floorMod(next.getAndIncrement(), available.size()));
+    }
+
+    /**
+     * Runs the read on the primary even in a read-only transaction. The connection is fetched on the first statement,
+     * so the read has to run the transaction's first statement (a method of its own, or the start of one).
+     */
+    public static <T> T readFromPrimary(Supplier<T> read) {
+        if (PRIMARY_READ.get() != null) {
+            return read.get();
+        }
+        PRIMARY_READ.set(Boolean.TRUE);
+        try {
+            return read.get();
+        } finally {
+            PRIMARY_READ.remove();
+        }
+    }
+
+    /**
+     * Called at the end of every request, the next read-only transaction of the thread may use a replica again.
+     */
+    public static void clearWritePin() {
+        WRITE_PIN.remove();
+    }
+
+    @Scheduled(fixedDelayString = "${patient.datasource.replica-lag-check-interval-ms:1000}")
+    public void checkReplicationLag() {
+        if (lagQuery == null || lagQuery.isBlank()) {
+            return;
+        }
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(lagQuery)) {
+                replica.lagMs = resultSet.next() ? resultSet.getLong(1) : 0;
+            } catch (SQLException e) {
+                replica.lagMs = -1;
+                log.warn("Error checking the replication lag of {}: {}", replica.dataSource.getPoolName(), e.getMessage());
+            }
+
+            boolean available = replica.lagMs >= 0 && replica.lagMs <= maxLagMs;
+            if (available != replica.available) {
+                log.warn("Replica {} is {}, lag {} ms", replica.dataSource.getPoolName(),
+                        available ? "back in rotation" : "out of rotation", replica.lagMs);
+            }
+            replica.available = available;
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        replicas.forEach(replica -> replica.dataSource.close());
+    }
+
+    private static final class Replica {
+
+        private final HikariDataSource dataSource;
+        private volatile long lagMs;
+        private volatile boolean available = true;
+
+        private Replica(HikariDataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        private int activeConnections() {
+            // the pool starts with its first connection
+            HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+            return pool == null ? 0 : pool.getActiveConnections();
+        }
+    }
+}
@@ -1,55 +1,259 @@
 package com.bwagih.patientservice.controller;
 
 import com.bwagih.patientservice.dto.APIBusinessLogicResponse;
+import com.bwagih.patientservice.dto.BulkImportResultDTO;
+import com.bwagih.patientservice.dto.PatientChangeDTO;
+import com.bwagih.patientservice.dto.PatientLookupRequestDTO;
+import com.bwagih.patientservice.dto.PatientLookupResultDTO;
+import com.bwagih.patientservice.dto.PatientPageDTO;
+import com.bwagih.patientservice.dto.PatientPatchRequestDTO;
 import com.bwagih.patientservice.dto.PatientRequestDTO;
 import com.bwagih.patientservice.dto.PatientResponseDTO;
+import com.bwagih.patientservice.dto.PatientSearchResultDTO;
 import com.bwagih.patientservice.dto.validators.CreatePatientValidationGroup;
+import com.bwagih.patientservice.mapper.PatientProtoMapper;
+import com.bwagih.patientservice.service.IdempotencyStore;
+import com.bwagih.patientservice.service.PatientChangeFeed;
+import com.bwagih.patientservice.service.PatientResponseCache;
 import com.bwagih.patientservice.service.PatientService;
 import com.bwagih.patientservice.utils.APIResponseHandler;
+import com.bwagih.patientservice.utils.PatientETag;
+import com.bwagih.patientservice.utils.PatientImportReader;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Validator;
 import jakarta.validation.groups.Default;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import patient.api.PatientLookupRequest;
+import patient.api.PatientLookupResult;
+import patient.api.PatientPage;
+import patient.api.PatientRequest;
+import patient.api.PatientResponse;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/patients")
 @Tag(name = "Patient", description = "API for managing Patients")
 public class PatientController {
 
+    /**
+     * Service to service calls may ask for protobuf instead of JSON, error responses stay JSON
+     * so such clients should send "Accept: application/x-protobuf, application/json".
+     */
+    public static final String PROTOBUF = "application/x-protobuf";
+
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    public static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+
     private final PatientService patientService;
+    private final PatientResponseCache patientResponseCache;
+    private final PatientChangeFeed patientChangeFeed;
+    private final IdempotencyStore idempotencyStore;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
 
-    public PatientController(PatientService patientService) {
+    @Value("${patient.changes.sse-timeout-ms:1800000}") long changesTimeoutMs;
+
+    public PatientController(PatientService patientService, PatientResponseCache patientResponseCache,
+                             PatientChangeFeed patientChangeFeed, IdempotencyStore idempotencyStore,
+                             ObjectMapper objectMapper, Validator validator) {
         this.patientService = patientService;
+        this.patientResponseCache = patientResponseCache;
+        this.patientChangeFeed = patientChangeFeed;
+        this.idempotencyStore = idempotencyStore;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
     }
 
 
-    @Operation(summary = "Get Patients")
+    @Operation(summary = "Get Patients (keyset paginated)")
     @GetMapping({"/", ""})
-    public ResponseEntity<APIBusinessLogicResponse<List<PatientResponseDTO>>> getPatients() {
-        List<PatientResponseDTO> patients = patientService.getPatients();
+    public ResponseEntity<APIBusinessLogicResponse<PatientPageDTO>> getPatients(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        PatientPageDTO patients = patientService.getPatients(cursor, size);
         return APIResponseHandler.createResponse(
                 HttpStatus.OK,
+                PatientETag.of(patients),
                 APIBusinessLogicResponse.success(patients)
         );
     }
 
+    @Operation(summary = "Get Patients (keyset paginated) as protobuf")
+    @GetMapping(value = {"/", ""}, produces = PROTOBUF)
+    public ResponseEntity<PatientPage> getPatientsProtobuf(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        PatientPageDTO patients = patientService.getPatients(cursor, size);
+        return ResponseEntity.ok()
+                .eTag(PatientETag.ofProtobuf(patients))
+                .body(PatientProtoMapper.toProto(patients));
+    }
+
+    @Operation(summary = "Search Patients by partial or fuzzy name, email or address")
+    @GetMapping("/search")
+    public ResponseEntity<APIBusinessLogicResponse<PatientSearchResultDTO>> searchPatients(
+            @RequestParam("q") String query,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(required = false) Integer size) {
+        PatientSearchResultDTO result = patientService.searchPatients(query, page, size);
+        return APIResponseHandler.createResponse(
+                HttpStatus.OK,
+                APIBusinessLogicResponse.success(result)
+        );
+    }
+
+    @Operation(summary = "Get many Patients by id in one request, unknown ids are listed as missing")
+    @PostMapping("/lookup")
+    public ResponseEntity<APIBusinessLogicResponse<PatientLookupResultDTO>> lookupPatients(
+            @Validated @RequestBody PatientLookupRequestDTO patientLookupRequestDTO) {
+        PatientLookupResultDTO result = patientService.lookupPatients(patientLookupRequestDTO.getIds());
+        return APIResponseHandler.createResponse(
+                HttpStatus.OK,
+                APIBusinessLogicResponse.success(result)
+        );
+    }
+
+    @Operation(summary = "Get many Patients by id in one protobuf request, unknown ids are listed as missing")
+    @PostMapping(value = "/lookup", consumes = PROTOBUF, produces = PROTOBUF)
+    public ResponseEntity<PatientLookupResult> lookupPatientsProtobuf(@RequestBody PatientLookupRequest patientLookupRequest) {
+        PatientLookupRequestDTO patientLookupRequestDTO = validate(PatientProtoMapper.toDTO(patientLookupRequest));
+        PatientLookupResultDTO result = patientService.lookupPatients(patientLookupRequestDTO.getIds());
+        return ResponseEntity.ok(PatientProtoMapper.toProto(result));
+    }
+
+    @Operation(summary = "Stream all Patients as newline delimited JSON")
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamPatients() {
+        StreamingResponseBody body = outputStream -> patientService.streamPatients(patient -> writeLine(outputStream, patient));
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    private void writeLine(OutputStream outputStream, Object value) {
+        try {
+            // writeValueAsBytes instead of writeValue(outputStream) since the latter closes the response stream
+            outputStream.write(objectMapper.writeValueAsBytes(value));
+            outputStream.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Operation(summary = "Stream the Patient creates, updates and deletes as server-sent events, resumable from a sequence number")
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestParam(required = false) Long after,
+                                    @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        // a reconnecting EventSource sends the id of the last event it received, without a position only new changes are sent
+        long from = lastEventId != null ? lastEventId : after != null ? after : patientChangeFeed.lastSequence();
+
+        SseEmitter emitter = new SseEmitter(changesTimeoutMs);
+        patientChangeFeed.subscribe(from, new PatientChangeFeed.ChangeSubscriber() {
+            @Override
+            public void send(PatientChangeDTO change) throws IOException {
+                emitter.send(SseEmitter.event()
+                        .id(String.valueOf(change.sequence()))
+                        .name(change.type())
+                        .data(change, MediaType.APPLICATION_JSON));
+            }
+
+            @Override
+            public void heartbeat() throws IOException {
+                emitter.send(SseEmitter.event().comment("heartbeat"));
+            }
+
+            @Override
+            public void complete() {
+                emitter.complete();
+            }
+
+            @Override
+            public void completeWithError(Throwable error) {
+                emitter.completeWithError(error);
+            }
+        });
+        return emitter;
+    }
+
     @Operation(summary = "Create a new Patient")
     @PostMapping({"/", ""})
-    public ResponseEntity<APIBusinessLogicResponse<String>> createPatient(
+    public CompletableFuture<ResponseEntity<APIBusinessLogicResponse<String>>> createPatient(
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
             @Validated({Default.class, CreatePatientValidationGroup.class})
             @RequestBody PatientRequestDTO patientRequestDTO) {
 
-        PatientResponseDTO patientResponseDTO = patientService.createPatient(patientRequestDTO);
+        // the request thread is released while the billing account is being created
+        return createPatientOnce(idempotencyKey, patientRequestDTO)
+                .thenApply(result -> ResponseEntity.status(HttpStatus.ACCEPTED)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header(IDEMPOTENT_REPLAYED, String.valueOf(result.replayed()))
+                        .body(APIBusinessLogicResponse.success(result.patient().getId())));
+    }
 
+    // a retry with the same Idempotency-Key gets the stored result instead of creating the patient again
+    private CompletableFuture<IdempotencyStore.Result> createPatientOnce(String idempotencyKey, PatientRequestDTO patientRequestDTO) {
+        if (idempotencyKey == null) {
+            return patientService.createPatient(patientRequestDTO)
+                    .thenApply(patientResponseDTO -> new IdempotencyStore.Result(patientResponseDTO, false));
+        }
+        return idempotencyStore.execute(idempotencyKey, patientRequestDTO,
+                onInsert -> patientService.createPatient(patientRequestDTO, onInsert));
+    }
+
+    @Operation(summary = "Create a new Patient from a protobuf request")
+    @PostMapping(value = {"/", ""}, consumes = PROTOBUF, produces = PROTOBUF)
+    public CompletableFuture<ResponseEntity<PatientResponse>> createPatientProtobuf(
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            @RequestBody PatientRequest patientRequest) {
+        PatientRequestDTO patientRequestDTO = validate(PatientProtoMapper.toDTO(patientRequest),
+                Default.class, CreatePatientValidationGroup.class);
+
+        return createPatientOnce(idempotencyKey, patientRequestDTO)
+                .thenApply(result -> ResponseEntity.status(HttpStatus.ACCEPTED)
+                        .header(IDEMPOTENT_REPLAYED, String.valueOf(result.replayed()))
+                        .body(PatientProtoMapper.toProto(result.patient())));
+    }
+
+    @Operation(summary = "Bulk import Patients from a JSON array")
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<APIBusinessLogicResponse<BulkImportResultDTO>> importPatientsJson(InputStream body) throws IOException {
+        try (PatientImportReader rows = PatientImportReader.json(objectMapper, body)) {
+            return importPatients(rows);
+        }
+    }
+
+    @Operation(summary = "Bulk import Patients from a CSV file with a header line")
+    @PostMapping(value = "/bulk", consumes = "text/csv")
+    public ResponseEntity<APIBusinessLogicResponse<BulkImportResultDTO>> importPatientsCsv(InputStream body) throws IOException {
+        try (PatientImportReader rows = PatientImportReader.csv(body)) {
+            return importPatients(rows);
+        }
+    }
+
+    private ResponseEntity<APIBusinessLogicResponse<BulkImportResultDTO>> importPatients(PatientImportReader rows) {
+        BulkImportResultDTO result = patientService.importPatients(rows);
         return APIResponseHandler.createResponse(
-                HttpStatus.ACCEPTED,
-                APIBusinessLogicResponse.success(patientResponseDTO.getId())
+                HttpStatus.OK,
+                APIBusinessLogicResponse.success(result)
         );
     }
 
@@ -57,21 +261,52 @@ public class PatientController {
     @Operation(summary = "Update a new Patient")
     @PutMapping("/{id}")
     public ResponseEntity<APIBusinessLogicResponse<UUID>> updatePatient(@PathVariable UUID id,
+                                                                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
                                                                         @Validated({Default.class}) @RequestBody PatientRequestDTO patientRequestDTO) {
 
-        PatientResponseDTO patientResponseDTO = patientService.updatePatient(id, patientRequestDTO);
+        PatientResponseDTO patientResponseDTO = patientService.updatePatient(id, patientRequestDTO, PatientETag.parseIfMatch(ifMatch));
 
         return APIResponseHandler.createResponse(
                 HttpStatus.OK,
+                PatientETag.of(patientResponseDTO),
                 APIBusinessLogicResponse.success(id)
         );
     }
 
+    @Operation(summary = "Update a Patient from a protobuf request")
+    @PutMapping(value = "/{id}", consumes = PROTOBUF, produces = PROTOBUF)
+    public ResponseEntity<PatientResponse> updatePatientProtobuf(@PathVariable UUID id,
+                                                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                                 @RequestBody PatientRequest patientRequest) {
+        PatientRequestDTO patientRequestDTO = validate(PatientProtoMapper.toDTO(patientRequest), Default.class);
+
+        PatientResponseDTO patientResponseDTO = patientService.updatePatient(id, patientRequestDTO, PatientETag.parseIfMatch(ifMatch));
+
+        return ResponseEntity.ok()
+                .eTag(PatientETag.ofProtobuf(patientResponseDTO))
+                .body(PatientProtoMapper.toProto(patientResponseDTO));
+    }
+
+    @Operation(summary = "Partially update a Patient, only the fields sent are applied")
+    @PatchMapping("/{id}")
+    public ResponseEntity<APIBusinessLogicResponse<UUID>> patchPatient(@PathVariable UUID id,
+                                                                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                                       @Validated @RequestBody PatientPatchRequestDTO patientPatchRequestDTO) {
+
+        boolean modified = patientService.patchPatient(id, patientPatchRequestDTO, PatientETag.parseIfMatch(ifMatch));
+
+        return APIResponseHandler.createResponse(
+                HttpStatus.OK,
+                APIBusinessLogicResponse.success(modified ? "Patient updated successfully" : "No changes detected", id)
+        );
+    }
+
     @Operation(summary = "Delete a Patient")
     @DeleteMapping("/{id}")
-    public ResponseEntity<APIBusinessLogicResponse<Void>> deletePatient(@PathVariable UUID id) {
+    public ResponseEntity<APIBusinessLogicResponse<Void>> deletePatient(@PathVariable UUID id,
+                                                                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
-        patientService.deletePatient(id);
+        patientService.deletePatient(id, PatientETag.parseIfMatch(ifMatch));
 
         return APIResponseHandler.createResponse(
                 HttpStatus.OK,
@@ -80,14 +315,60 @@ public class PatientController {
     }
 
     @Operation(summary = "Get a Patient")
-    @GetMapping("/{id}")
-    public ResponseEntity<APIBusinessLogicResponse<PatientResponseDTO>> getPatient(@PathVariable UUID id) {
+    @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getPatient(@PathVariable UUID id,
+                                             @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                             @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // the encoded response is cached, an unchanged patient costs neither a query nor a serialized body (304)
+        // and a changed one is written without going through the DTO and jackson again
+        PatientResponseCache.EncodedResponse response = patientResponseCache.getPatient(id);
+        // a cache revalidating the coding it holds gets a 304 naming that one, whichever coding it asks for
+        for (String eTag : new String[]{response.eTag(), response.gzipETag()}) {
+            if (eTag != null && PatientETag.matchesIfNoneMatch(ifNoneMatch, eTag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).varyBy(HttpHeaders.ACCEPT_ENCODING).build();
+            }
+        }
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (response.hasGzip() && acceptsGzip(acceptEncoding)) {
+            return builder.eTag(response.gzipETag()).header(HttpHeaders.CONTENT_ENCODING, "gzip").body(response.gzip());
+        }
+        return builder.eTag(response.eTag()).body(response.json());
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            if (name.equalsIgnoreCase("gzip") || name.equals("*")) {
+                // "gzip;q=0" means the client refuses gzip
+                return parts.length == 1 || !parts[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    @Operation(summary = "Get a Patient as protobuf")
+    @GetMapping(value = "/{id}", produces = PROTOBUF)
+    public ResponseEntity<PatientResponse> getPatientProtobuf(@PathVariable UUID id) {
         PatientResponseDTO patientResponseDTO = patientService.getPatientById(id);
-        return APIResponseHandler.createResponse(
-                HttpStatus.OK,
-                APIBusinessLogicResponse.success(patientResponseDTO)
-        );
+        return ResponseEntity.ok()
+                .eTag(PatientETag.ofProtobuf(patientResponseDTO))
+                .body(PatientProtoMapper.toProto(patientResponseDTO));
     }
 
+    // @Validated only applies to jackson bodies, the protobuf requests are mapped to the DTOs and validated here
+    private <T> T validate(T dto, Class<?>... groups) {
+        Set<ConstraintViolation<T>> violations = validator.validate(dto, groups);
+        if (!violations.isEmpty()) {
+            ConstraintViolation<T> violation = violations.iterator().next();
+            throw new ConstraintViolationException(violation.getPropertyPath() + ": " + violation.getMessage(), violations);
+        }
+        return dto;
+    }
 
 }
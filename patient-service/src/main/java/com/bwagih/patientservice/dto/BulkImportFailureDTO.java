@@ -0,0 +1,18 @@
+package com.bwagih.patientservice.dto;
+
+import lombok.*;
+
+import java.io.Serializable;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BulkImportFailureDTO implements Serializable {
+
+    private int row;
+    private String email;
+    private String error;
+
+}
@@ -0,0 +1,53 @@
+package com.bwagih.patientservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.*;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BulkImportResultDTO implements Serializable {
+
+    private int total;
+    private int created;
+    private int failed;
+
+    // patients that were created but whose billing account could not be opened
+    private int billingFailed;
+
+    @Builder.Default
+    private List<BulkImportFailureDTO> failures = new ArrayList<>();
+
+    // more failures than the limit are counted but not listed
+    private boolean failuresTruncated;
+
+    // the file could not be read to the end, the rows after the one reported last were not imported
+    private boolean aborted;
+
+    @JsonIgnore
+    @Builder.Default
+    private int maxReportedFailures = Integer.MAX_VALUE;
+
+    public void addFailure(int row, String email, String error) {
+        failed++;
+        if (failures.size() < maxReportedFailures) {
+            failures.add(new BulkImportFailureDTO(row, email, error));
+        } else {
+            failuresTruncated = true;
+        }
+    }
+
+    /**
+     * Reported in the failures as a row without an email, even when the failure list is already full.
+     */
+    public void abort(int row, String error) {
+        aborted = true;
+        failures.add(new BulkImportFailureDTO(row, null, error));
+    }
+}
@@ -0,0 +1,10 @@
+package com.bwagih.patientservice.dto;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A change feed entry, the current state of the patient is fetched with GET /patients/{id} or POST /patients/lookup.
+ */
+public record PatientChangeDTO(long sequence, String type, UUID patientId, long version, Instant changedAt) {
+}
@@ -0,0 +1,17 @@
+package com.bwagih.patientservice.dto;
+
+/**
+ * A single row of a bulk import, either a parsed patient or the reason the row could not be parsed.
+ *
+ * @param rowNumber 1-based position of the row in the uploaded file (excluding the csv header)
+ */
+public record PatientImportRow(int rowNumber, PatientRequestDTO patient, String error) {
+
+    public static PatientImportRow of(int rowNumber, PatientRequestDTO patient) {
+        return new PatientImportRow(rowNumber, patient, null);
+    }
+
+    public static PatientImportRow failed(int rowNumber, String error) {
+        return new PatientImportRow(rowNumber, null, error);
+    }
+}
@@ -0,0 +1,24 @@
+package com.bwagih.patientservice.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.*;
+
+import java.util.List;
+import java.util.UUID;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PatientLookupRequestDTO {
+
+    public static final int MAX_IDS = 5000;
+
+    @NotEmpty(message = "At least one id is required")
+    @Size(max = MAX_IDS, message = "Cannot look up more than " + MAX_IDS + " ids at once")
+    private List<@NotNull(message = "Ids cannot be null") UUID> ids;
+
+}
@@ -0,0 +1,22 @@
+package com.bwagih.patientservice.dto;
+
+import lombok.*;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.UUID;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PatientLookupResultDTO implements Serializable {
+
+    // in the order of the requested ids, repeated ids appear once
+    private List<PatientResponseDTO> content;
+
+    // requested ids with no patient
+    private List<UUID> missing;
+
+}
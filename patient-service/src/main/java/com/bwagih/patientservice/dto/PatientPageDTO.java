@@ -0,0 +1,22 @@
+package com.bwagih.patientservice.dto;
+
+import lombok.*;
+
+import java.io.Serializable;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PatientPageDTO implements Serializable {
+
+    private List<PatientResponseDTO> content;
+
+    // opaque continuation token, pass it back as the "cursor" param to fetch the next page
+    private String nextCursor;
+
+    private boolean hasNext;
+
+}
@@ -0,0 +1,34 @@
+package com.bwagih.patientservice.dto;
+
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import lombok.*;
+
+/**
+ * Partial update of a patient, a null field means "not sent" and keeps its current value.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PatientPatchRequestDTO {
+
+    private static final String NOT_BLANK = ".*\\S.*";
+
+    @Pattern(regexp = NOT_BLANK, message = "Name cannot be blank")
+    @Size(max = 100, message = "Name cannot exceed 100 characters")
+    private String name;
+
+    @Email(message = "Email should be valid")
+    @Pattern(regexp = NOT_BLANK, message = "Email cannot be blank")
+    private String email;
+
+    @Pattern(regexp = NOT_BLANK, message = "Address cannot be blank")
+    private String address;
+
+    @Pattern(regexp = NOT_BLANK, message = "Date of birth cannot be blank")
+    private String dateOfBirth;
+
+}
@@ -1,5 +1,6 @@
 package com.bwagih.patientservice.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 
 import java.io.Serializable;
@@ -17,4 +18,8 @@ public class PatientResponseDTO implements Serializable {
     private String address;
     private String dateOfBirth;
 
+    // exposed through the ETag header, not the body
+    @JsonIgnore
+    private long version;
+
 }
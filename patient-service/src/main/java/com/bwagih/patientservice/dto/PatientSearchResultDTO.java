@@ -0,0 +1,21 @@
+package com.bwagih.patientservice.dto;
+
+import lombok.*;
+
+import java.io.Serializable;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PatientSearchResultDTO implements Serializable {
+
+    // ranked best match first
+    private List<PatientResponseDTO> content;
+    private int page;
+    private int size;
+    private long totalMatches;
+
+}
@@ -3,10 +3,12 @@ package com.bwagih.patientservice.exception;
 import com.bwagih.patientservice.dto.ApiGlobalErrorResponse;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.ValidationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 
 public class CustomExceptionHandler {
@@ -51,4 +53,123 @@ public class CustomExceptionHandler {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
     }
 
+    /**
+     * Handle malformed pagination cursors globally.
+     */
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<ApiGlobalErrorResponse> handleInvalidCursorException(InvalidCursorException ex, HttpServletRequest request) {
+        log.warn("Invalid cursor {}", ex.getMessage());
+
+        ApiGlobalErrorResponse errorResponse = ApiGlobalErrorResponse.builder()
+                .status(HttpStatus.BAD_REQUEST.value())
+                .error("Invalid cursor")
+                .message(ex.getMessage())
+                .path(request.getRequestURI())
+                .build();
+
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+    }
+
+    /**
+     * Handle unreadable bulk import files globally.
+     */
+    @ExceptionHandler(InvalidImportFileException.class)
+    public ResponseEntity<ApiGlobalErrorResponse> handleInvalidImportFileException(InvalidImportFileException ex, HttpServletRequest request) {
+        log.warn("Invalid import file {}", ex.getMessage());
+
+        ApiGlobalErrorResponse errorResponse = ApiGlobalErrorResponse.builder()
+                .status(HttpStatus.BAD_REQUEST.value())
+                .error("Invalid import file")
+                .message(ex.getMessage())
+                .path(request.getRequestURI())
+                .build();
+
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+    }
+
+    /**
+     * Handle validation errors of the request bodies that are validated programmatically (protobuf requests).
+     */
+    @ExceptionHandler(ValidationException.class)
+    public ResponseEntity<ApiGlobalErrorResponse> handleValidationException(ValidationException ex, HttpServletRequest request) {
+        log.warn("Validation error {}", ex.getMessage());
+
+        ApiGlobalErrorResponse errorResponse = ApiGlobalErrorResponse.builder()
+                .status(HttpStatus.BAD_REQUEST.value())
+                .error("Validation Error")
+                .message(ex.getMessage())
+                .path(request.getRequestURI())
+                .build();
+
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+    }
+
+    /**
+     * Handle failed If-Match preconditions globally.
+     */
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<ApiGlobalErrorResponse> handlePreconditionFailedException(PreconditionFailedException ex, HttpServletRequest request) {
+        log.warn("Precondition failed {}", ex.getMessage());
+
+        ApiGlobalErrorResponse errorResponse = ApiGlobalErrorResponse.builder()
+                .status(HttpStatus.PRECONDITION_FAILED.value())
+                .error("Precondition failed")
+                .message(ex.getMessage())
+                .path(request.getRequestURI())
+                .build();
+
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(errorResponse);
+    }
+
+    /**
+     * Handle idempotency keys sent again with another request body globally.
+     */
+    @ExceptionHandler(IdempotencyKeyReusedException.class)
+    public ResponseEntity<ApiGlobalErrorResponse> handleIdempotencyKeyReusedException(IdempotencyKeyReusedException ex, HttpServletRequest request) {
+        log.warn("Idempotency key reused {}", ex.getMessage());
+
+        ApiGlobalErrorResponse errorResponse = ApiGlobalErrorResponse.builder()
+                .status(HttpStatus.UNPROCESSABLE_ENTITY.value())
+                .error("Idempotency key reused")
+                .message(ex.getMessage())
+                .path(request.getRequestURI())
+                .build();
+
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(errorResponse);
+    }
+
+    /**
+     * Handle the change feed subscriptions over the limit globally.
+     */
+    @ExceptionHandler(TooManySubscribersException.class)
+    public ResponseEntity<ApiGlobalErrorResponse> handleTooManySubscribersException(TooManySubscribersException ex, HttpServletRequest request) {
+        log.warn("Change feed subscription rejected {}", ex.getMessage());
+
+        ApiGlobalErrorResponse errorResponse = ApiGlobalErrorResponse.builder()
+                .status(HttpStatus.SERVICE_UNAVAILABLE.value())
+                .error("Too many subscribers")
+                .message(ex.getMessage())
+                .path(request.getRequestURI())
+                .build();
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(errorResponse);
+    }
+
+    /**
+     * Handle concurrent modifications detected by the version column globally.
+     */
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    public ResponseEntity<ApiGlobalErrorResponse> handleOptimisticLockingFailureException(ObjectOptimisticLockingFailureException ex, HttpServletRequest request) {
+        log.warn("Concurrent modification {}", ex.getMessage());
+
+        ApiGlobalErrorResponse errorResponse = ApiGlobalErrorResponse.builder()
+                .status(HttpStatus.PRECONDITION_FAILED.value())
+                .error("Precondition failed")
+                .message("The patient was modified concurrently, fetch it again and retry")
+                .path(request.getRequestURI())
+                .build();
+
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(errorResponse);
+    }
+
 }
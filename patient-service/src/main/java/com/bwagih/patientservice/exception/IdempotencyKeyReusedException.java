@@ -0,0 +1,8 @@
+package com.bwagih.patientservice.exception;
+
+public class IdempotencyKeyReusedException extends RuntimeException {
+
+    public IdempotencyKeyReusedException(String message) {
+        super(message);
+    }
+}
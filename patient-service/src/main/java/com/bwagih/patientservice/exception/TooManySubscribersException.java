@@ -0,0 +1,8 @@
+package com.bwagih.patientservice.exception;
+
+public class TooManySubscribersException extends RuntimeException {
+
+    public TooManySubscribersException(String message) {
+        super(message);
+    }
+}
@@ -3,25 +3,44 @@ package com.bwagih.patientservice.grpc;
 import billing.BillingRequest;
 import billing.BillingResponse;
 import billing.BillingServiceGrpc;
-import billing.BillingServiceGrpc.BillingServiceBlockingStub;
+import billing.BillingServiceGrpc.BillingServiceFutureStub;
+import com.bwagih.patientservice.utils.ThreadFactories;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class BillingServiceGrpcClient {
 
     private static final Logger log = LoggerFactory.getLogger(BillingServiceGrpcClient.class);
-    private BillingServiceBlockingStub blockingStub;
+    private BillingServiceFutureStub futureStub;
+    private final MeterRegistry meterRegistry;
 
     @Value("${billing.service.address:localhost}") String serverAddress;
     @Value("${billing.service.grpc.port:9001}") int serverPort;
+    @Value("${billing.service.grpc.deadline-ms:3000}") long deadlineMs;
+    @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads;
 
+    public BillingServiceGrpcClient(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
 
     @PostConstruct
     public void init() {
@@ -33,16 +52,22 @@ public class BillingServiceGrpcClient {
         // http://localhost:9001/BillingService/CreateBillingAccount  --> this is in local environment
         // https://billing-service:9001/BillingService/CreateBillingAccount --> this is in production environment as a service
         // aws.grpc:billing-service:9001/BillingService/CreateBillingAccount --> this is in aws environment as a service
-        ManagedChannel channel = ManagedChannelBuilder.forAddress(serverAddress, serverPort).usePlaintext().build();
-
-        // create a blocking stub to the billing service
-        blockingStub = BillingServiceGrpc.newBlockingStub(channel);
+        ManagedChannelBuilder<?> channelBuilder = ManagedChannelBuilder.forAddress(serverAddress, serverPort).usePlaintext();
+        if (virtualThreads) {
+            // run the call callbacks on virtual threads instead of grpc's default cached platform pool
+            channelBuilder.executor(Executors.newThreadPerTaskExecutor(ThreadFactories.named("billing-grpc", true)));
+        }
+        ManagedChannel channel = channelBuilder.build();
+
+        // create a future stub to the billing service, used for non-blocking calls and to fan out many calls at once
+        futureStub = BillingServiceGrpc.newFutureStub(channel);
     }
 
-
-
-
-    public BillingResponse createBillingAccount(String patientId, String name, String email, double initialAmount) {
+    /**
+     * Non-blocking, the calling thread is released as soon as the call is started.
+     * The future fails with a {@link io.grpc.StatusRuntimeException} (DEADLINE_EXCEEDED once the deadline passes).
+     */
+    public CompletableFuture<BillingResponse> createBillingAccountAsync(String patientId, String name, String email, double initialAmount) {
 
         BillingRequest request = BillingRequest.newBuilder()
                 .setPatientId(patientId)
@@ -51,8 +76,83 @@ public class BillingServiceGrpcClient {
                 .setInitialAmount(initialAmount)
                 .build();
 
-        BillingResponse response = blockingStub.createBillingAccount(request);
-        log.info("Received response from billing service via GRPC: {}", response);
-        return response;
+        CompletableFuture<BillingResponse> result = new CompletableFuture<>();
+        ListenableFuture<BillingResponse> call = timed(futureStub.withDeadlineAfter(deadlineMs, TimeUnit.MILLISECONDS)
+                .createBillingAccount(request));
+
+        Futures.addCallback(call, new FutureCallback<>() {
+            @Override
+            public void onSuccess(BillingResponse response) {
+                log.info("Received response from billing service via GRPC: {}", response);
+                result.complete(response);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                log.error("Error creating billing account for patient: {}, error: {}", patientId, t.getMessage());
+                result.completeExceptionally(t);
+            }
+        }, MoreExecutors.directExecutor());
+
+        // propagate cancellation of the returned future to the grpc call
+        result.whenComplete((response, t) -> {
+            if (result.isCancelled()) {
+                call.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Issue all the requests concurrently over the shared channel and wait for them to complete.
+     * The responses are in the same order as the requests, a failed call yields a null entry.
+     */
+    public List<BillingResponse> createBillingAccounts(List<BillingRequest> requests) {
+        BillingServiceFutureStub stub = futureStub.withDeadlineAfter(deadlineMs, TimeUnit.MILLISECONDS);
+        List<ListenableFuture<BillingResponse>> futures = requests.stream()
+                .map(request -> timed(stub.createBillingAccount(request)))
+                .toList();
+
+        try {
+            List<BillingResponse> responses = Futures.successfulAsList(futures).get();
+            log.info("Received {} responses from billing service via GRPC", responses.size());
+            return responses;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(future -> future.cancel(true));
+            throw new IllegalStateException("Interrupted while waiting for billing service responses", e);
+        } catch (ExecutionException e) {
+            // successfulAsList never fails, individual failures are reported as null entries
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Record the call duration once the future completes, the sample starts when the call is issued.
+     */
+    private ListenableFuture<BillingResponse> timed(ListenableFuture<BillingResponse> call) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Futures.addCallback(call, new FutureCallback<>() {
+            @Override
+            public void onSuccess(BillingResponse response) {
+                sample.stop(callTimer(null));
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                sample.stop(callTimer(t));
+            }
+        }, MoreExecutors.directExecutor());
+        return call;
+    }
+
+    private Timer callTimer(Throwable error) {
+        Status.Code status = error == null ? Status.Code.OK : Status.fromThrowable(error).getCode();
+        return Timer.builder("patient.billing.grpc.calls")
+                .tag("method", "CreateBillingAccount")
+                .tag("status", status.name())
+                .description("Billing service grpc calls by resulting grpc status")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,69 @@
+package com.bwagih.patientservice.kafka;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.Message;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Encodes one event payload type to the record value, the consumer (analytics-service) decodes it by the eventType
+ * and contentType headers.
+ */
+public interface EventCodec<T> {
+
+    Class<T> type();
+
+    String contentType();
+
+    byte[] encode(T payload);
+
+    /**
+     * The protobuf encoding of a generated message (no Any, no reflection).
+     */
+    static <T extends Message> EventCodec<T> protobuf(Class<T> type) {
+        return new EventCodec<>() {
+            @Override
+            public Class<T> type() {
+                return type;
+            }
+
+            @Override
+            public String contentType() {
+                return EventHeaders.PROTOBUF;
+            }
+
+            @Override
+            public byte[] encode(T payload) {
+                return payload.toByteArray();
+            }
+
+        };
+    }
+
+    /**
+     * Binary JSON (smile) for the payloads without a protobuf message.
+     */
+    static <T> EventCodec<T> smile(Class<T> type, ObjectMapper smileMapper) {
+        return new EventCodec<>() {
+            @Override
+            public Class<T> type() {
+                return type;
+            }
+
+            @Override
+            public String contentType() {
+                return EventHeaders.SMILE;
+            }
+
+            @Override
+            public byte[] encode(T payload) {
+                try {
+                    return smileMapper.writeValueAsBytes(payload);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+}
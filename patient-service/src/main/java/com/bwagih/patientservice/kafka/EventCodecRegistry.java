@@ -0,0 +1,49 @@
+package com.bwagih.patientservice.kafka;
+
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.google.protobuf.Message;
+import org.springframework.stereotype.Component;
+import patient.events.PatientEvent;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The codec of every event type. Known types are encoded directly as their protobuf message, other protobuf messages
+ * fall back to their protobuf encoding and other objects to smile. The content type travels with the event
+ * (outbox row, then contentType header), the consumer (analytics-service) decodes by it.
+ */
+@Component
+public class EventCodecRegistry {
+
+    public static final String PATIENT_CREATED = "PATIENT_CREATED";
+
+    private final EventCodec<Object> fallback = EventCodec.smile(Object.class, new SmileMapper());
+    private final Map<String, EventCodec<?>> codecs = new HashMap<>();
+
+    public EventCodecRegistry() {
+        register(PATIENT_CREATED, EventCodec.protobuf(PatientEvent.class));
+    }
+
+    private void register(String eventType, EventCodec<?> codec) {
+        codecs.put(eventType, codec);
+    }
+
+    public EncodedEvent encode(String eventType, Object payload) {
+        EventCodec<?> codec = codecs.get(eventType);
+        if (codec != null && codec.type().isInstance(payload)) {
+            return encode(codec, payload);
+        }
+        if (payload instanceof Message message) {
+            return new EncodedEvent(EventHeaders.PROTOBUF, message.toByteArray());
+        }
+        return encode(fallback, payload);
+    }
+
+    private static <T> EncodedEvent encode(EventCodec<T> codec, Object payload) {
+        return new EncodedEvent(codec.contentType(), codec.encode(codec.type().cast(payload)));
+    }
+
+    public record EncodedEvent(String contentType, byte[] bytes) {
+    }
+}
@@ -0,0 +1,19 @@
+package com.bwagih.patientservice.kafka;
+
+/**
+ * Kafka record headers describing the event in the record value, the value itself is only the encoded payload
+ * and the event time is the record timestamp.
+ * Kept in sync with the consumer (analytics-service).
+ */
+public final class EventHeaders {
+
+    public static final String EVENT_ID = "eventId";
+    public static final String EVENT_TYPE = "eventType";
+    public static final String CONTENT_TYPE = "contentType";
+
+    public static final String PROTOBUF = "application/x-protobuf";
+    public static final String SMILE = "application/x-jackson-smile";
+
+    private EventHeaders() {
+    }
+}
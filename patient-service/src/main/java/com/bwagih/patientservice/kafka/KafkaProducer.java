@@ -1,76 +1,131 @@
 package com.bwagih.patientservice.kafka;
 
-import com.bwagih.patientservice.model.Patient;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.protobuf.Any;
-import com.google.protobuf.Message;
-import com.google.protobuf.StringValue;
-import events.GenericEvent;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.KafkaException;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
-import java.util.UUID;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the events relayed from the outbox, keyed by their aggregate (patient) id so the events of one patient stay
+ * ordered on one partition. The record value is the payload encoded by the {@link EventCodecRegistry}, the event id,
+ * type and content type are sent as {@link EventHeaders}.
+ * Batching, linger, compression and retries are producer settings (spring.kafka.producer.*), a record the producer
+ * gave up on stays in the outbox for the next relay poll. This class adds:
+ * <ul>
+ *     <li>backpressure, a send blocks (up to max-block-ms, then fails) while the records not acked yet
+ *     add up to more than max-in-flight-bytes, instead of queueing without bound</li>
+ *     <li>send latency, record size and backpressure metrics, the producer batch metrics are
+ *     published by spring boot as kafka.producer.*</li>
+ * </ul>
+ */
 @Service
 public class KafkaProducer {
 
-    private static final Logger log = LoggerFactory.getLogger(KafkaProducer.class);
     private final KafkaTemplate<String, byte[]> kafkaTemplate;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MeterRegistry meterRegistry;
+
+    private final int maxInFlightBytes;
+    private final Semaphore inFlightBytes;
+    private final long maxBlockMs;
 
-    public KafkaProducer(KafkaTemplate<String, byte[]> kafkaTemplate) {
+    private final DistributionSummary recordSize;
+    private final Counter backpressureCounter;
+
+    public KafkaProducer(KafkaTemplate<String, byte[]> kafkaTemplate, MeterRegistry meterRegistry,
+                         @Value("${patient.kafka.producer.max-in-flight-bytes:33554432}") int maxInFlightBytes,
+                         @Value("${patient.kafka.producer.max-block-ms:5000}") long maxBlockMs) {
         this.kafkaTemplate = kafkaTemplate;
+        this.meterRegistry = meterRegistry;
+        this.maxInFlightBytes = maxInFlightBytes;
+        this.inFlightBytes = new Semaphore(maxInFlightBytes);
+        this.maxBlockMs = maxBlockMs;
+
+        Gauge.builder("patient.kafka.in.flight.bytes", inFlightBytes, permits -> maxInFlightBytes - permits.availablePermits())
+                .description("Bytes handed to the producer and not acked by the broker yet")
+                .register(meterRegistry);
+        this.recordSize = DistributionSummary.builder("patient.kafka.record.size")
+                .baseUnit("bytes")
+                .description("Serialized size of the records sent")
+                .register(meterRegistry);
+        this.backpressureCounter = Counter.builder("patient.kafka.send.rejected")
+                .description("Sends failed because the in-flight bytes stayed over the limit for max-block-ms")
+                .register(meterRegistry);
     }
 
     /**
-     * Send a Protocol Buffers-based event
+     * The record of an encoded event, keyed by the aggregate (patient) id.
      */
-    public <T extends Message> void sendEvent(T payload, String eventType, String topic) {
-        GenericEvent event = GenericEvent.newBuilder()
-                .setEventId(UUID.randomUUID().toString())
-                .setEventType(eventType)
-                .setTimestamp(Instant.now().toEpochMilli())
-                .setPayload(Any.pack(payload)) // <-- Wraps the message like <T>
-                .build();
-
-        try {
-            kafkaTemplate.send(topic, event.toByteArray());
-        } catch (Exception e) {
-            log.error("Error sending event: {}, on topic: {}, error: {}", event, topic, e.getMessage(), e);
-        }
+    public static ProducerRecord<String, byte[]> record(String topic, String key, String eventId, String eventType,
+                                                        String contentType, Instant timestamp, byte[] payload) {
+        ProducerRecord<String, byte[]> record = new ProducerRecord<>(topic, null, timestamp.toEpochMilli(), key, payload);
+        record.headers()
+                .add(EventHeaders.EVENT_ID, eventId.getBytes(StandardCharsets.UTF_8))
+                .add(EventHeaders.EVENT_TYPE, eventType.getBytes(StandardCharsets.UTF_8))
+                .add(EventHeaders.CONTENT_TYPE, contentType.getBytes(StandardCharsets.UTF_8));
+        return record;
     }
 
-
-
     /**
-     * Send a JSON-based event by wrapping the JSON string inside a Protobuf Any payload.
+     * Send an encoded event, the returned future completes once the broker acked the record.
+     * The send is timed until the broker ack (or the failure), tagged with the topic and the outcome.
      */
-    public void sendEvent(Object payload, String eventType, String topic) {
+    public CompletableFuture<SendResult<String, byte[]>> send(ProducerRecord<String, byte[]> record) {
+        String topic = record.topic();
+        byte[] event = record.value();
+        // a record larger than the limit waits for everything else to be acked
+        int permits = Math.min(event.length, maxInFlightBytes);
         try {
-            // Convert POJO to JSON string
-            String jsonString = objectMapper.writeValueAsString(payload);
-
-            // Wrap JSON inside a StringValue and pack it into Any
-            Any jsonWrapped = Any.pack(StringValue.of(jsonString));
-
-
-            GenericEvent event = GenericEvent.newBuilder()
-                    .setEventId(UUID.randomUUID().toString())
-                    .setEventType(eventType)
-                    .setTimestamp(Instant.now().toEpochMilli())
-                    .setPayload(jsonWrapped)
-                    .build();
-
-            kafkaTemplate.send(topic, event.toByteArray());
+            if (!inFlightBytes.tryAcquire(permits, maxBlockMs, TimeUnit.MILLISECONDS)) {
+                backpressureCounter.increment();
+                return CompletableFuture.failedFuture(new KafkaException(
+                        "Kafka producer has more than " + maxInFlightBytes + " bytes in flight for " + maxBlockMs + " ms"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
 
-            log.info("JSON event sent successfully. Type: {}, Topic: {}", eventType, topic);
-        } catch (Exception e) {
-            log.error("Error sending JSON event. Type: {}, Topic: {}, Error: {}", eventType, topic, e.getMessage(), e);
+        recordSize.record(event.length);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        CompletableFuture<SendResult<String, byte[]>> result = new CompletableFuture<>();
+        result.whenComplete((sendResult, e) -> {
+            inFlightBytes.release(permits);
+            sample.stop(sendTimer(topic, e == null ? "success" : "failure"));
+        });
+        try {
+            kafkaTemplate.send(record).whenComplete((sendResult, e) -> {
+                if (e == null) {
+                    result.complete(sendResult);
+                } else {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
         }
+        return result;
     }
 
+    private Timer sendTimer(String topic, String outcome) {
+        return Timer.builder("patient.kafka.send")
+                .tag("topic", topic)
+                .tag("outcome", outcome)
+                .description("Time from handing a record to the producer until the broker acked it")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,37 @@
+package com.bwagih.patientservice.kafka;
+
+import com.bwagih.patientservice.model.OutboxEvent;
+import com.bwagih.patientservice.repository.OutboxEventRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+/**
+ * Writes events to the transactional outbox instead of sending them to kafka,
+ * the {@link OutboxRelay} ships them once the surrounding transaction commits.
+ */
+@Service
+public class OutboxPublisher {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final EventCodecRegistry codecRegistry;
+
+    public OutboxPublisher(OutboxEventRepository outboxEventRepository, EventCodecRegistry codecRegistry) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.codecRegistry = codecRegistry;
+    }
+
+    /**
+     * Must join the transaction that writes the aggregate, otherwise the event could outlive a rollback.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void publish(String aggregateId, Object payload, String eventType, String topic) {
+        // the relay sends the payload with the content type the registry encoded it with
+        EventCodecRegistry.EncodedEvent event = codecRegistry.encode(eventType, payload);
+
+        outboxEventRepository.save(new OutboxEvent(null, aggregateId, eventType, event.contentType(), topic,
+                event.bytes(), Instant.now()));
+    }
+}
@@ -0,0 +1,170 @@
+package com.bwagih.patientservice.kafka;
+
+import com.bwagih.patientservice.model.OutboxEvent;
+import com.bwagih.patientservice.repository.OutboxEventRepository;
+import com.bwagih.patientservice.utils.ThreadFactories;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains the outbox table to kafka in ordered batches.
+ * Each tick runs {@code parallelism} workers, every worker claims its own batch with SKIP LOCKED,
+ * sends it keyed by the aggregate id, waits for the acks and deletes the delivered rows in the same transaction.
+ * Rows that could not be delivered stay in the table and are retried on the next tick.
+ * <p>
+ * A batch holds at most one event per aggregate, the oldest one still pending, so the events of an aggregate are
+ * delivered one after the other in outbox order across the workers and instances, and a failed event holds back
+ * the later events of its aggregate until it is delivered.
+ */
+@Component
+public class OutboxRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final KafkaProducer kafkaProducer;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService workers;
+    private final int parallelism;
+
+    private final AtomicLong depth = new AtomicLong();
+    private final AtomicLong lagMillis = new AtomicLong();
+    private final Counter relayedCounter;
+    private final Counter failedCounter;
+    private final Timer batchTimer;
+
+    @Value("${patient.outbox.relay.batch-size:500}") int batchSize;
+    @Value("${patient.outbox.relay.send-timeout-ms:10000}") long sendTimeoutMs;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository, KafkaProducer kafkaProducer,
+                       PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                       @Value("${patient.outbox.relay.parallelism:2}") int parallelism,
+                       @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.kafkaProducer = kafkaProducer;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.parallelism = parallelism;
+
+        this.workers = ThreadFactories.newExecutor("outbox-relay", parallelism, virtualThreads);
+
+        Gauge.builder("patient.outbox.depth", depth, AtomicLong::get)
+                .description("Number of events waiting in the outbox")
+                .register(meterRegistry);
+        TimeGauge.builder("patient.outbox.relay.lag", lagMillis, TimeUnit.MILLISECONDS, AtomicLong::get)
+                .description("Age of the oldest event waiting in the outbox")
+                .register(meterRegistry);
+        this.relayedCounter = Counter.builder("patient.outbox.relayed")
+                .description("Events delivered to kafka by the outbox relay")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("patient.outbox.relay.failures")
+                .description("Events the outbox relay failed to deliver, they are retried on the next poll")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("patient.outbox.relay.batch")
+                .description("Time to claim, send and delete one outbox batch")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${patient.outbox.relay.poll-interval-ms:200}")
+    public void relay() {
+        List<Future<?>> drains = new ArrayList<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            drains.add(workers.submit(this::drain));
+        }
+
+        for (Future<?> drain : drains) {
+            try {
+                drain.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                log.error("Outbox relay worker failed: {}", e.getCause().getMessage(), e.getCause());
+            }
+        }
+    }
+
+    private void drain() {
+        // keep going while the batches come back full, a partial batch means the outbox is drained (or kafka is failing)
+        int delivered;
+        do {
+            Timer.Sample sample = Timer.start();
+            delivered = relayBatch();
+            sample.stop(batchTimer);
+        } while (delivered == batchSize);
+    }
+
+    private int relayBatch() {
+        Integer delivered = transactionTemplate.execute(status -> {
+            List<OutboxEvent> batch = outboxEventRepository.findBatchForRelay(PageRequest.of(0, batchSize));
+            if (batch.isEmpty()) {
+                return 0;
+            }
+
+            List<CompletableFuture<SendResult<String, byte[]>>> sends = batch.stream()
+                    // the outbox id is the event id, it stays the same when a row is relayed again
+                    .map(event -> kafkaProducer.send(KafkaProducer.record(event.getTopic(), event.getAggregateId(),
+                            String.valueOf(event.getId()), event.getEventType(), event.getContentType(),
+                            event.getCreatedAt(), event.getPayload())))
+                    .toList();
+
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+            List<Long> deliveredIds = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                OutboxEvent event = batch.get(i);
+                try {
+                    sends.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    deliveredIds.add(event.getId());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (ExecutionException | TimeoutException e) {
+                    failedCounter.increment();
+                    log.warn("Error relaying outbox event: {}, type: {}, topic: {}, error: {}",
+                            event.getId(), event.getEventType(), event.getTopic(), e.getMessage());
+                }
+            }
+
+            if (!deliveredIds.isEmpty()) {
+                outboxEventRepository.deleteByIdIn(deliveredIds);
+            }
+            return deliveredIds.size();
+        });
+
+        int count = delivered == null ? 0 : delivered;
+        relayedCounter.increment(count);
+        return count;
+    }
+
+    // the depth is a count(*) over the table, refreshed on its own slower schedule instead of on every poll
+    @Scheduled(fixedDelayString = "${patient.outbox.metrics-interval-ms:10000}")
+    public void refreshMetrics() {
+        depth.set(outboxEventRepository.count());
+        Instant oldest = outboxEventRepository.findOldestCreatedAt();
+        lagMillis.set(oldest == null ? 0 : Math.max(0, Duration.between(oldest, Instant.now()).toMillis()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+    }
+}
@@ -1,8 +1,11 @@
 package com.bwagih.patientservice.mapper;
 
+import com.bwagih.patientservice.dto.PatientChangeDTO;
 import com.bwagih.patientservice.dto.PatientRequestDTO;
 import com.bwagih.patientservice.dto.PatientResponseDTO;
 import com.bwagih.patientservice.model.Patient;
+import com.bwagih.patientservice.model.PatientChange;
+import com.bwagih.patientservice.model.PatientSummary;
 
 import java.time.LocalDate;
 
@@ -14,10 +17,30 @@ public class PatientMapper {
         patientDTO.setAddress(patient.getAddress());
         patientDTO.setEmail(patient.getEmail());
         patientDTO.setDateOfBirth(patient.getDateOfBirth().toString());
+        patientDTO.setVersion(patient.getVersion());
 
         return patientDTO;
     }
 
+    public static PatientResponseDTO toDTO(PatientSummary patient) {
+        return new PatientResponseDTO(
+                patient.id().toString(),
+                patient.name(),
+                patient.email(),
+                patient.address(),
+                patient.dateOfBirth().toString(),
+                patient.version());
+    }
+
+    public static PatientChangeDTO toDTO(PatientChange change) {
+        return new PatientChangeDTO(
+                change.getId(),
+                change.getType().name(),
+                change.getPatientId(),
+                change.getVersion(),
+                change.getChangedAt());
+    }
+
     public static Patient toModel(PatientRequestDTO patientRequestDTO) {
         Patient patient = new Patient();
         patient.setName(patientRequestDTO.getName());
@@ -0,0 +1,78 @@
+package com.bwagih.patientservice.mapper;
+
+import com.bwagih.patientservice.dto.PatientLookupRequestDTO;
+import com.bwagih.patientservice.dto.PatientLookupResultDTO;
+import com.bwagih.patientservice.dto.PatientPageDTO;
+import com.bwagih.patientservice.dto.PatientRequestDTO;
+import com.bwagih.patientservice.dto.PatientResponseDTO;
+import jakarta.validation.ValidationException;
+import patient.api.PatientLookupRequest;
+import patient.api.PatientLookupResult;
+import patient.api.PatientPage;
+import patient.api.PatientRequest;
+import patient.api.PatientResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public class PatientProtoMapper {
+
+    // proto3 has no null strings, an unset field comes back as "" and is mapped to null so the DTO validation still applies
+    public static PatientRequestDTO toDTO(PatientRequest request) {
+        return PatientRequestDTO.builder()
+                .name(emptyToNull(request.getName()))
+                .email(emptyToNull(request.getEmail()))
+                .address(emptyToNull(request.getAddress()))
+                .dateOfBirth(emptyToNull(request.getDateOfBirth()))
+                .registeredDate(emptyToNull(request.getRegisteredDate()))
+                .build();
+    }
+
+    public static PatientLookupRequestDTO toDTO(PatientLookupRequest request) {
+        List<UUID> ids = new ArrayList<>(request.getIdsCount());
+        for (String id : request.getIdsList()) {
+            try {
+                ids.add(UUID.fromString(id));
+            } catch (IllegalArgumentException e) {
+                throw new ValidationException("Invalid patient id: " + id);
+            }
+        }
+        return PatientLookupRequestDTO.builder().ids(ids).build();
+    }
+
+    public static PatientResponse toProto(PatientResponseDTO patient) {
+        return PatientResponse.newBuilder()
+                .setId(patient.getId())
+                .setName(patient.getName())
+                .setEmail(patient.getEmail())
+                .setAddress(patient.getAddress())
+                .setDateOfBirth(patient.getDateOfBirth())
+                .build();
+    }
+
+    public static PatientResponseDTO toDTO(PatientResponse response, long version) {
+        return new PatientResponseDTO(response.getId(), response.getName(), response.getEmail(), response.getAddress(),
+                response.getDateOfBirth(), version);
+    }
+
+    public static PatientPage toProto(PatientPageDTO page) {
+        PatientPage.Builder builder = PatientPage.newBuilder().setHasNext(page.isHasNext());
+        page.getContent().forEach(patient -> builder.addContent(toProto(patient)));
+        if (page.getNextCursor() != null) {
+            builder.setNextCursor(page.getNextCursor());
+        }
+        return builder.build();
+    }
+
+    public static PatientLookupResult toProto(PatientLookupResultDTO result) {
+        PatientLookupResult.Builder builder = PatientLookupResult.newBuilder();
+        result.getContent().forEach(patient -> builder.addContent(toProto(patient)));
+        result.getMissing().forEach(id -> builder.addMissing(id.toString()));
+        return builder.build();
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+}
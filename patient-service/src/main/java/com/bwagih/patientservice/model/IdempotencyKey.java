@@ -0,0 +1,46 @@
+package com.bwagih.patientservice.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * The patient created for an Idempotency-Key, so a retry reaching another instance (or a restarted one) is replayed.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+
+@Entity
+@Table(name = "idempotency_key")
+public class IdempotencyKey {
+
+    @Id
+    @Column(name = "idempotency_key")
+    private String key;
+
+    // hash of the request body, the same key cannot be reused for another patient
+    @NotNull
+    private String fingerprint;
+
+    @NotNull
+    private UUID patientId;
+
+    @NotNull
+    private Instant createdAt;
+
+    // the response of the first request (protobuf PatientResponse) and the version of its ETag, replayed as is
+    // after the patient changed or was deleted, null for the keys stored before the response was
+    @Column(length = 65_536)
+    private byte[] response;
+
+    private Long patientVersion;
+
+}
@@ -0,0 +1,52 @@
+package com.bwagih.patientservice.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * An encoded event payload waiting to be relayed to kafka,
+ * written in the same transaction as the change that produced it.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+
+@Entity
+@Table(name = "outbox_event")
+public class OutboxEvent {
+
+    // sequence (not identity) so the inserts can be batched, the id also gives the relay order
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_event_seq")
+    @SequenceGenerator(name = "outbox_event_seq", sequenceName = "outbox_event_seq", allocationSize = 50)
+    private Long id;
+
+    // used as the kafka record key
+    @NotNull
+    private String aggregateId;
+
+    @NotNull
+    private String eventType;
+
+    // the encoding of the payload, sent as the contentType header
+    @NotNull
+    private String contentType;
+
+    @NotNull
+    private String topic;
+
+    @NotNull
+    @Column(length = 1_048_576)
+    private byte[] payload;
+
+    @NotNull
+    private Instant createdAt;
+
+}
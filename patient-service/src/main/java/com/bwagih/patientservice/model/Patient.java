@@ -7,6 +7,7 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.time.LocalDate;
 import java.util.UUID;
@@ -16,11 +17,14 @@ import java.util.UUID;
 @Getter
 @Setter
 
+// only the modified columns are part of the UPDATE statement
+@DynamicUpdate
 @Entity
 public class Patient {
 
+    // time-ordered so new rows append to the end of the primary key index
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @TimeOrderedUuid
     private UUID id;
 
     @NotNull
@@ -40,5 +44,10 @@ public class Patient {
     @NotNull
     private LocalDate registeredDate;
 
+    // bumped on every update, concurrent writers fail instead of overwriting each other
+    @Version
+    @Column(nullable = false)
+    private long version;
+
 }
 
@@ -0,0 +1,51 @@
+package com.bwagih.patientservice.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * One create, update or delete of a patient, written in the same transaction as the change itself.
+ * The id is the sequence number the change feed subscribers resume from.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+
+@Entity
+@Table(name = "patient_change")
+public class PatientChange {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    // sequence (not identity) so the inserts of a bulk import can be batched, one number per fetch: pooled blocks
+    // would hand out numbers out of the order the changes were made in
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "patient_change_seq")
+    @SequenceGenerator(name = "patient_change_seq", sequenceName = "patient_change_seq", allocationSize = 1)
+    private Long id;
+
+    @NotNull
+    private UUID patientId;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    @Column(name = "change_type")
+    private Type type;
+
+    // the patient version after the change, the version that was deleted for a delete
+    private long version;
+
+    @NotNull
+    private Instant changedAt;
+
+}
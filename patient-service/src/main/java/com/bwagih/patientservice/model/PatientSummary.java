@@ -0,0 +1,12 @@
+package com.bwagih.patientservice.model;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Read-only projection of {@link Patient} selected with a constructor expression,
+ * it is never managed by the persistence context so there is no dirty-checking snapshot behind it.
+ */
+public record PatientSummary(UUID id, String name, String email, String address,
+                             LocalDate dateOfBirth, LocalDate registeredDate, long version) {
+}
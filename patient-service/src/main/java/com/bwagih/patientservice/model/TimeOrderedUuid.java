@@ -0,0 +1,28 @@
+package com.bwagih.patientservice.model;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Generates the UUID primary key in-process when the entity is persisted, no database round trip.
+ * Version 7 (time-ordered) by default, {@link Style#RANDOM} falls back to version 4.
+ * Both versions share the same column type so existing random ids stay valid.
+ */
+@IdGeneratorType(TimeOrderedUuidGenerator.class)
+@Retention(RUNTIME)
+@Target({FIELD, METHOD})
+public @interface TimeOrderedUuid {
+
+    Style style() default Style.VERSION_7;
+
+    enum Style {
+        VERSION_7,
+        RANDOM
+    }
+}
@@ -0,0 +1,28 @@
+package com.bwagih.patientservice.model;
+
+import com.bwagih.patientservice.utils.UuidV7;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+
+import java.util.EnumSet;
+import java.util.UUID;
+
+public class TimeOrderedUuidGenerator implements BeforeExecutionGenerator {
+
+    private final TimeOrderedUuid.Style style;
+
+    public TimeOrderedUuidGenerator(TimeOrderedUuid config) {
+        this.style = config.style();
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue, EventType eventType) {
+        return style == TimeOrderedUuid.Style.RANDOM ? UUID.randomUUID() : UuidV7.randomUUID();
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EnumSet.of(EventType.INSERT);
+    }
+}
@@ -0,0 +1,35 @@
+package com.bwagih.patientservice.repository;
+
+import com.bwagih.patientservice.model.OutboxEvent;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // lock timeout -2 is hibernate's SKIP LOCKED, concurrent relays (threads or instances) claim disjoint batches.
+    // Only the oldest pending event of every aggregate is claimed, the next one becomes claimable once it was
+    // delivered and deleted, so the events of an aggregate are never sent concurrently or ahead of a failed one
+    @Meta(comment = "Claim the oldest pending outbox event of every aggregate for relaying")
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("select e from OutboxEvent e where not exists (select 1 from OutboxEvent earlier"
+            + " where earlier.aggregateId = e.aggregateId and earlier.id < e.id) order by e.id asc")
+    List<OutboxEvent> findBatchForRelay(Pageable pageable);
+
+    @Meta(comment = "Find the creation time of the oldest pending outbox event")
+    @Query("select min(e.createdAt) from OutboxEvent e")
+    Instant findOldestCreatedAt();
+
+    @Meta(comment = "Delete the relayed outbox events")
+    @Modifying
+    @Query("delete from OutboxEvent e where e.id in :ids")
+    int deleteByIdIn(Collection<Long> ids);
+}
@@ -0,0 +1,29 @@
+package com.bwagih.patientservice.repository;
+
+import com.bwagih.patientservice.model.PatientChange;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Meta;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface PatientChangeRepository extends JpaRepository<PatientChange, Long> {
+
+    @Meta(comment = "Fetch the patient changes in the given sequence range")
+    @Query("select c from PatientChange c where c.id > :after and c.id <= :upTo order by c.id asc")
+    List<PatientChange> findChangesBetween(long after, long upTo, Pageable pageable);
+
+    @Meta(comment = "Find the sequence number of the last patient change")
+    @Query("select max(c.id) from PatientChange c")
+    Long findLastSequence();
+
+    @Meta(comment = "Delete the patient changes older than the retention")
+    @Modifying
+    @Query("delete from PatientChange c where c.changedAt < :before")
+    int deleteChangedBefore(Instant before);
+}
@@ -1,11 +1,24 @@
 package com.bwagih.patientservice.repository;
 
 import com.bwagih.patientservice.model.Patient;
+import com.bwagih.patientservice.model.PatientSummary;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Meta;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface PatientRepository extends JpaRepository<Patient, UUID> {
@@ -15,4 +28,44 @@ public interface PatientRepository extends JpaRepository<Patient, UUID> {
 
     @Meta(comment = "Check if a patient with the given email exists and the id is not the same")
     boolean existsByEmailAndIdNot(String email, UUID id);
-}
\ No newline at end of file
+
+    @Meta(comment = "Find which of the given emails are already in use")
+    @Query("select p.email from Patient p where p.email in :emails")
+    Set<String> findExistingEmails(Collection<String> emails);
+
+    // read paths project straight into PatientSummary instead of materializing managed entities
+    String SUMMARY_SELECT = "select new com.bwagih.patientservice.model.PatientSummary(p.id, p.name, p.email, p.address, p.dateOfBirth, p.registeredDate, p.version) from Patient p ";
+
+    @Meta(comment = "Fetch a patient projection by id")
+    @Query(SUMMARY_SELECT + "where p.id = :id")
+    Optional<PatientSummary> findSummaryById(UUID id);
+
+    @Meta(comment = "Fetch the patient projections of the given ids")
+    @Query(SUMMARY_SELECT + "where p.id in :ids")
+    List<PatientSummary> findSummariesByIdIn(Collection<UUID> ids);
+
+    // only the page size is taken from the pageable, the order is fixed by the keyset (registeredDate, id)
+    @Meta(comment = "Fetch the first page of patients ordered by the keyset")
+    @Query(SUMMARY_SELECT + "order by p.registeredDate asc, p.id asc")
+    List<PatientSummary> findFirstPage(Pageable pageable);
+
+    @Meta(comment = "Fetch the page of patients that follows the given keyset position")
+    @Query(SUMMARY_SELECT + """
+            where p.registeredDate > :registeredDate
+               or (p.registeredDate = :registeredDate and p.id > :id)
+            order by p.registeredDate asc, p.id asc
+            """)
+    List<PatientSummary> findPageAfter(LocalDate registeredDate, UUID id, Pageable pageable);
+
+    // must be consumed inside a (read-only) transaction and closed afterward
+    @Meta(comment = "Stream all patients ordered by the keyset")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(SUMMARY_SELECT + "order by p.registeredDate asc, p.id asc")
+    Stream<PatientSummary> streamAll();
+
+    // must be consumed inside a (read-only) transaction and closed afterward
+    @Meta(comment = "Stream the emails of all patients")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "5000"))
+    @Query("select p.email from Patient p")
+    Stream<String> streamAllEmails();
+}
@@ -0,0 +1,204 @@
+package com.bwagih.patientservice.service;
+
+import com.bwagih.patientservice.dto.PatientRequestDTO;
+import com.bwagih.patientservice.dto.PatientResponseDTO;
+import com.bwagih.patientservice.exception.IdempotencyKeyReusedException;
+import com.bwagih.patientservice.mapper.PatientMapper;
+import com.bwagih.patientservice.mapper.PatientProtoMapper;
+import com.bwagih.patientservice.model.IdempotencyKey;
+import com.bwagih.patientservice.model.Patient;
+import com.bwagih.patientservice.repository.IdempotencyKeyRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.validation.ValidationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import patient.api.PatientResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.MessageFormat;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Idempotency-Key support of POST /patients. The first request with a key creates the patient, a retry with the
+ * same key gets the stored result without touching the database, billing or kafka, and a retry arriving while the
+ * first request is still running waits for its result.
+ * <p>
+ * The key is bound to the patient when the patient transaction commits. A request failing before the commit does not
+ * keep its key, the retry runs again. A failure after the commit (billing) is only reported to that request,
+ * the retry gets the created patient.
+ * <p>
+ * Keys are kept in a bounded in-memory cache, with patient.idempotency.persistent they are also written to the
+ * idempotency_key table, in the patient transaction, so the retries reaching another (or a restarted) instance
+ * are replayed as well. Both keep the response of the first request, a retry gets the original 201 even after the
+ * patient was updated or deleted. Only the keys stored before the table kept the response are replayed from the
+ * current patient, a deleted one then answers 404.
+ */
+@Component
+public class IdempotencyStore {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyStore.class);
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final Cache<String, Entry> entries;
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final PatientService patientService;
+    private final Counter replayedCounter;
+    private final long ttlHours;
+
+    @Value("${patient.idempotency.persistent:false}") boolean persistent;
+
+    public IdempotencyStore(IdempotencyKeyRepository idempotencyKeyRepository, PatientService patientService, MeterRegistry meterRegistry,
+                            @Value("${patient.idempotency.max-keys:100000}") long maxKeys,
+                            @Value("${patient.idempotency.ttl-hours:24}") long ttlHours) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.patientService = patientService;
+        this.ttlHours = ttlHours;
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterWrite(Duration.ofHours(ttlHours))
+                .build();
+        this.replayedCounter = Counter.builder("patient.idempotency.replayed")
+                .description("POST /patients retries answered from the idempotency store")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Run the creation once per key, see the class documentation.
+     *
+     * @param creation creates the patient, running the given callback in the transaction of the insert
+     */
+    public CompletableFuture<Result> execute(String key, PatientRequestDTO request,
+                                             Function<Consumer<Patient>, CompletableFuture<PatientResponseDTO>> creation) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new ValidationException("Idempotency-Key must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+        String fingerprint = fingerprint(request);
+
+        Entry entry = new Entry(fingerprint, new CompletableFuture<>());
+        Entry existing = entries.asMap().putIfAbsent(key, entry);
+        if (existing != null) {
+            return replay(key, existing, fingerprint);
+        }
+
+        if (persistent) {
+            Optional<IdempotencyKey> stored = idempotencyKeyRepository.findById(key);
+            if (stored.isPresent()) {
+                try {
+                    checkFingerprint(key, stored.get().getFingerprint(), fingerprint);
+                    entry.response().complete(storedResponse(stored.get()));
+                } catch (RuntimeException e) {
+                    entries.asMap().remove(key, entry);
+                    entry.response().completeExceptionally(e);
+                    throw e;
+                }
+                replayedCounter.increment();
+                return entry.response().thenApply(response -> new Result(response, true));
+            }
+        }
+
+        CompletableFuture<PatientResponseDTO> response;
+        try {
+            response = creation.apply(patient -> bind(key, fingerprint, entry, patient));
+        } catch (RuntimeException e) {
+            fail(key, entry, e);
+            throw e;
+        }
+        // the entry is complete once the patient committed, only a creation failing without a commit drops the key
+        response.whenComplete((patient, e) -> {
+            if (e != null && !entry.response().isDone()) {
+                fail(key, entry, e);
+            }
+        });
+        return response.thenApply(patient -> new Result(patient, false));
+    }
+
+    private PatientResponseDTO storedResponse(IdempotencyKey stored) {
+        if (stored.getResponse() == null) {
+            return patientService.getPatientById(stored.getPatientId());
+        }
+        try {
+            return PatientProtoMapper.toDTO(PatientResponse.parseFrom(stored.getResponse()), stored.getPatientVersion());
+        } catch (InvalidProtocolBufferException e) {
+            throw new IllegalStateException("Could not decode the stored response of Idempotency-Key " + stored.getKey(), e);
+        }
+    }
+
+    private void bind(String key, String fingerprint, Entry entry, Patient patient) {
+        PatientResponseDTO response = PatientMapper.toDTO(patient);
+        if (persistent) {
+            idempotencyKeyRepository.save(new IdempotencyKey(key, fingerprint, patient.getId(), Instant.now(),
+                    PatientProtoMapper.toProto(response).toByteArray(), response.getVersion()));
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                entry.response().complete(response);
+            }
+        });
+    }
+
+    private CompletableFuture<Result> replay(String key, Entry existing, String fingerprint) {
+        checkFingerprint(key, existing.fingerprint(), fingerprint);
+        replayedCounter.increment();
+        // still running when the first request is in flight, the retry completes with it
+        return existing.response().thenApply(response -> new Result(response, true));
+    }
+
+    private void fail(String key, Entry entry, Throwable error) {
+        // the waiting retries get the same error, the next one runs again
+        entries.asMap().remove(key, entry);
+        entry.response().completeExceptionally(error);
+    }
+
+    private static void checkFingerprint(String key, String stored, String fingerprint) {
+        if (!stored.equals(fingerprint)) {
+            throw new IdempotencyKeyReusedException(MessageFormat.format("Idempotency-Key {0} was already used with another request", key));
+        }
+    }
+
+    private static String fingerprint(PatientRequestDTO request) {
+        String body = String.join("\u0000", String.valueOf(request.getName()), String.valueOf(request.getEmail()),
+                String.valueOf(request.getAddress()), String.valueOf(request.getDateOfBirth()), String.valueOf(request.getRegisteredDate()));
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Scheduled(cron = "${patient.idempotency.cleanup-cron:0 30 3 * * *}")
+    @Transactional
+    public void deleteExpiredKeys() {
+        if (persistent) {
+            int deleted = idempotencyKeyRepository.deleteCreatedBefore(Instant.now().minus(Duration.ofHours(ttlHours)));
+            log.info("Deleted {} idempotency keys older than {} hours", deleted, ttlHours);
+        }
+    }
+
+    private record Entry(String fingerprint, CompletableFuture<PatientResponseDTO> response) {
+    }
+
+    /**
+     * @param replayed true when the response was stored by an earlier request with the same key
+     */
+    public record Result(PatientResponseDTO patient, boolean replayed) {
+    }
+}
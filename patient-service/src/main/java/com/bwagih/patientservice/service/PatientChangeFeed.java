@@ -0,0 +1,340 @@
+package com.bwagih.patientservice.service;
+
+import com.bwagih.patientservice.dto.PatientChangeDTO;
+import com.bwagih.patientservice.exception.TooManySubscribersException;
+import com.bwagih.patientservice.mapper.PatientMapper;
+import com.bwagih.patientservice.model.Patient;
+import com.bwagih.patientservice.model.PatientChange;
+import com.bwagih.patientservice.repository.PatientChangeRepository;
+import com.bwagih.patientservice.utils.ThreadFactories;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Change feed of the patient creates, updates and deletes, resumable from a sequence number.
+ * Every change is written to the patient_change table in the transaction of the change and, once committed,
+ * appended to a bounded in-memory ring buffer. Subscribers within the buffer are served from memory,
+ * subscribers further behind are served from the table until they catch up with the buffer.
+ * <p>
+ * Sequence numbers are taken before the commit, so a change is only published once every change with a lower
+ * sequence number committed or rolled back, a resumed subscriber never skips a change that committed late.
+ * <p>
+ * The feed is per instance: the buffer only holds the changes committed by this instance, and the ordering above
+ * only covers its own transactions. With several instances a change another instance commits late can land below
+ * a sequence number a subscriber already passed, subscribers should stay on one instance (sticky routing).
+ */
+@Component
+public class PatientChangeFeed {
+
+    private static final Logger log = LoggerFactory.getLogger(PatientChangeFeed.class);
+
+    private final PatientChangeRepository patientChangeRepository;
+    private final TransactionTemplate readTransaction;
+    private final ExecutorService subscriberExecutor;
+    private final Semaphore subscriberPermits;
+
+    // everything below is guarded by the lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition published = lock.newCondition();
+    private final PatientChangeDTO[] buffer;
+    private int bufferStart;
+    private int bufferSize;
+    // the changes up to this sequence number are only in the table
+    private long evictedUpTo;
+    private long lastPublished;
+    // writers fetching a sequence number, by ticket: the number is fetched outside the lock, so a pending writer
+    // may still get a number below one already registered
+    private final NavigableSet<Long> acquiring = new TreeSet<>();
+    private long lastTicket;
+    // sequence numbers taken by transactions still running, and the committed changes waiting for them,
+    // with the last ticket pending when the number was registered
+    private final NavigableMap<Long, Long> inFlight = new TreeMap<>();
+    private final NavigableMap<Long, Pending> committed = new TreeMap<>();
+
+    @Value("${patient.changes.batch-size:500}") int batchSize;
+    @Value("${patient.changes.heartbeat-interval-ms:15000}") long heartbeatIntervalMs;
+    @Value("${patient.changes.retention-days:7}") int retentionDays;
+
+    public PatientChangeFeed(PatientChangeRepository patientChangeRepository, PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${patient.changes.buffer-size:10000}") int bufferSize,
+                             @Value("${patient.changes.max-subscribers:256}") int maxSubscribers,
+                             @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.patientChangeRepository = patientChangeRepository;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.buffer = new PatientChangeDTO[bufferSize];
+        this.subscriberPermits = new Semaphore(maxSubscribers);
+        this.subscriberExecutor = ThreadFactories.newExecutor("patient-changes", maxSubscribers, virtualThreads);
+
+        Gauge.builder("patient.changes.subscribers", subscriberPermits, permits -> maxSubscribers - permits.availablePermits())
+                .description("Clients streaming the patient change feed")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        Long last = patientChangeRepository.findLastSequence();
+        evictedUpTo = last == null ? 0 : last;
+        lastPublished = evictedUpTo;
+    }
+
+    /**
+     * Must join the transaction that writes the patient, the change is published once it commits.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(Patient patient, PatientChange.Type type) {
+        Instant changedAt = Instant.now();
+        // the ticket is taken before the sequence number, the changes registered meanwhile wait for it
+        long ticket = startAcquiring();
+        long sequence;
+        try {
+            // persisting fetches the number from the sequence, the insert itself is flushed with the transaction
+            sequence = patientChangeRepository.save(new PatientChange(null, patient.getId(), type,
+                    patient.getVersion(), changedAt)).getId();
+        } catch (RuntimeException e) {
+            finishAcquiring(ticket, null);
+            throw e;
+        }
+        finishAcquiring(ticket, sequence);
+
+        PatientChangeDTO change = new PatientChangeDTO(sequence, type.name(), patient.getId(), patient.getVersion(), changedAt);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                complete(sequence, status == STATUS_COMMITTED ? change : null);
+            }
+        });
+    }
+
+    private long startAcquiring() {
+        lock.lock();
+        try {
+            acquiring.add(++lastTicket);
+            return lastTicket;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void finishAcquiring(long ticket, Long sequence) {
+        lock.lock();
+        try {
+            acquiring.remove(ticket);
+            if (sequence != null) {
+                // the writers still fetching may get a lower number, later writers get a higher one
+                inFlight.put(sequence, acquiring.isEmpty() ? 0L : acquiring.last());
+            }
+            publishReady();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void complete(long sequence, PatientChangeDTO change) {
+        lock.lock();
+        try {
+            Long blocker = inFlight.remove(sequence);
+            if (change != null) {
+                committed.put(sequence, new Pending(change, blocker));
+            }
+            publishReady();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Publishes the committed changes in sequence order, up to the first one that may still get a lower neighbour:
+     * a transaction with a lower number is still running, or a writer pending when it was registered is still
+     * fetching its number.
+     */
+    private void publishReady() {
+        long horizon = inFlight.isEmpty() ? Long.MAX_VALUE : inFlight.firstKey();
+        long firstPending = acquiring.isEmpty() ? Long.MAX_VALUE : acquiring.first();
+        boolean any = false;
+        while (!committed.isEmpty() && committed.firstKey() < horizon && committed.firstEntry().getValue().blocker() < firstPending) {
+            append(committed.pollFirstEntry().getValue().change());
+            any = true;
+        }
+        if (any) {
+            published.signalAll();
+        }
+    }
+
+    private record Pending(PatientChangeDTO change, long blocker) {
+    }
+
+    private void append(PatientChangeDTO change) {
+        if (bufferSize == buffer.length) {
+            evictedUpTo = buffer[bufferStart].sequence();
+            buffer[bufferStart] = null;
+            bufferStart = (bufferStart + 1) % buffer.length;
+            bufferSize--;
+        }
+        buffer[(bufferStart + bufferSize) % buffer.length] = change;
+        bufferSize++;
+        lastPublished = change.sequence();
+    }
+
+    public long lastSequence() {
+        lock.lock();
+        try {
+            return lastPublished;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The next changes after the given sequence number, from the buffer or from the table when they were evicted.
+     */
+    public List<PatientChangeDTO> readAfter(long after, int max) {
+        while (true) {
+            long upTo;
+            lock.lock();
+            try {
+                if (after >= evictedUpTo) {
+                    return readBufferAfter(after, max);
+                }
+                upTo = evictedUpTo;
+            } finally {
+                lock.unlock();
+            }
+
+            long from = after;
+            List<PatientChangeDTO> changes = readTransaction.execute(status -> patientChangeRepository
+                    .findChangesBetween(from, upTo, PageRequest.of(0, max))
+                    .stream()
+                    .map(PatientMapper::toDTO)
+                    .toList());
+            if (changes != null && !changes.isEmpty()) {
+                return changes;
+            }
+            // nothing left in the table (or removed by the retention), continue from the buffer
+            after = upTo;
+        }
+    }
+
+    private List<PatientChangeDTO> readBufferAfter(long after, int max) {
+        // the buffer is ordered by sequence number, find the first change after the given one
+        int low = 0;
+        int high = bufferSize;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (buffer[(bufferStart + middle) % buffer.length].sequence() <= after) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        int count = Math.min(max, bufferSize - low);
+        List<PatientChangeDTO> changes = new ArrayList<>(count);
+        for (int i = low; i < low + count; i++) {
+            changes.add(buffer[(bufferStart + i) % buffer.length]);
+        }
+        return changes;
+    }
+
+    private boolean awaitAfter(long after, long timeoutMs) throws InterruptedException {
+        lock.lock();
+        try {
+            long nanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+            while (lastPublished <= after && nanos > 0) {
+                nanos = published.awaitNanos(nanos);
+            }
+            return lastPublished > after;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Push the changes after the given sequence number to the subscriber, then every new change as it is published,
+     * until the subscriber fails to send (the client went away).
+     */
+    public void subscribe(long after, ChangeSubscriber subscriber) {
+        if (!subscriberPermits.tryAcquire()) {
+            throw new TooManySubscribersException("Too many change feed subscribers, retry later");
+        }
+        subscriberExecutor.execute(() -> {
+            try {
+                stream(after, subscriber);
+                subscriber.complete();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                subscriber.complete();
+            } catch (Exception e) {
+                log.debug("Change feed subscriber stopped: {}", e.getMessage());
+                subscriber.completeWithError(e);
+            } finally {
+                subscriberPermits.release();
+            }
+        });
+    }
+
+    private void stream(long after, ChangeSubscriber subscriber) throws IOException, InterruptedException {
+        long position = after;
+        while (!Thread.currentThread().isInterrupted()) {
+            List<PatientChangeDTO> changes = readAfter(position, batchSize);
+            for (PatientChangeDTO change : changes) {
+                subscriber.send(change);
+                position = change.sequence();
+            }
+            if (changes.size() < batchSize && !awaitAfter(position, heartbeatIntervalMs)) {
+                subscriber.heartbeat();
+            }
+        }
+    }
+
+    @Scheduled(cron = "${patient.changes.cleanup-cron:0 0 3 * * *}")
+    @Transactional
+    public void deleteExpiredChanges() {
+        int deleted = patientChangeRepository.deleteChangedBefore(Instant.now().minus(Duration.ofDays(retentionDays)));
+        log.info("Deleted {} patient changes older than {} days", deleted, retentionDays);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscriberExecutor.shutdownNow();
+    }
+
+    /**
+     * Where the change feed pushes the changes, send and heartbeat throw once the client is gone.
+     */
+    public interface ChangeSubscriber {
+
+        void send(PatientChangeDTO change) throws IOException;
+
+        void heartbeat() throws IOException;
+
+        void complete();
+
+        void completeWithError(Throwable error);
+    }
+}
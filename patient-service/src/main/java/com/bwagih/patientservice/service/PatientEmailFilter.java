@@ -0,0 +1,237 @@
+package com.bwagih.patientservice.service;
+
+import com.bwagih.patientservice.repository.PatientRepository;
+import com.bwagih.patientservice.utils.ThreadFactories;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In-process Bloom filter over the patient emails placed in front of the email uniqueness queries.
+ * A negative answer is definite and skips the database, a positive one (or a filter that is not built yet)
+ * falls back to the query. Bloom filters cannot forget, so deleted or changed emails only count as stale
+ * entries and the filter is rebuilt in the background once there are too many of them or it is saturated.
+ * <p>
+ * A rebuild never loses an email put meanwhile: the emails of the transactions still running when it starts are
+ * copied into the new filter (their rows may commit after the table is streamed), later puts go to both filters,
+ * and a put cannot interleave with the swap. The unique constraint on the email column remains the final guard.
+ */
+@Component
+public class PatientEmailFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(PatientEmailFilter.class);
+
+    private final PatientRepository patientRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ExecutorService rebuildExecutor;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final AtomicLong staleEntries = new AtomicLong();
+    private final Counter negativeCounter;
+    private final Counter positiveCounter;
+
+    // null until the first build completes, every check goes to the database meanwhile
+    private volatile FilterState current;
+    // the filter being rebuilt, receives the writes that happen while the table is streamed
+    private volatile BloomFilter<CharSequence> pending;
+    // puts hold the read lock, starting and publishing a rebuild the write lock
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    // emails put by transactions that did not complete yet, with the number of such transactions
+    private final Map<String, Integer> uncommitted = new ConcurrentHashMap<>();
+
+    @Value("${patient.email-filter.expected-insertions:1000000}") long expectedInsertions;
+    @Value("${patient.email-filter.fpp:0.01}") double fpp;
+    @Value("${patient.email-filter.max-stale-ratio:0.1}") double maxStaleRatio;
+
+    private record FilterState(BloomFilter<CharSequence> filter, long expectedInsertions, long bitSize) {
+    }
+
+    public PatientEmailFilter(PatientRepository patientRepository, PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry, @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.patientRepository = patientRepository;
+        this.rebuildExecutor = Executors.newSingleThreadExecutor(ThreadFactories.named("email-filter-rebuild", virtualThreads));
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+
+        this.negativeCounter = Counter.builder("patient.email.filter.checks")
+                .tag("result", "negative")
+                .description("Email checks answered by the filter without a database query")
+                .register(meterRegistry);
+        this.positiveCounter = Counter.builder("patient.email.filter.checks")
+                .tag("result", "positive")
+                .description("Email checks that fell back to the database")
+                .register(meterRegistry);
+        Gauge.builder("patient.email.filter.expected.fpp", this, filter -> filter.current == null ? Double.NaN : filter.current.filter().expectedFpp())
+                .description("Current false positive probability of the email filter")
+                .register(meterRegistry);
+        Gauge.builder("patient.email.filter.approximate.count", this, filter -> filter.current == null ? 0 : filter.current.filter().approximateElementCount())
+                .description("Approximate number of emails in the filter")
+                .register(meterRegistry);
+        Gauge.builder("patient.email.filter.memory", this, filter -> filter.current == null ? 0 : filter.current.bitSize() / 8.0)
+                .baseUnit("bytes")
+                .description("Memory used by the email filter bit array")
+                .register(meterRegistry);
+        Gauge.builder("patient.email.filter.stale.entries", staleEntries, AtomicLong::get)
+                .description("Deleted or replaced emails still set in the filter")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuildAsync();
+    }
+
+    /**
+     * @return false when the email is definitely not in use, true when the database has to be asked
+     */
+    public boolean mightContain(String email) {
+        FilterState state = current;
+        if (state == null) {
+            return true;
+        }
+        boolean mightContain = state.filter().mightContain(email);
+        (mightContain ? positiveCounter : negativeCounter).increment();
+        return mightContain;
+    }
+
+    /**
+     * Must be called before the email is committed, so there is no moment where the database has it and the filter does not.
+     */
+    public void put(String email) {
+        swapLock.readLock().lock();
+        try {
+            trackUntilCompletion(email);
+            FilterState state = current;
+            if (state != null) {
+                state.filter().put(email);
+            }
+            BloomFilter<CharSequence> next = pending;
+            if (next != null) {
+                next.put(email);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    private void trackUntilCompletion(String email) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        uncommitted.merge(email, 1, Integer::sum);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                uncommitted.computeIfPresent(email, (key, count) -> count == 1 ? null : count - 1);
+            }
+        });
+    }
+
+    /**
+     * Record that an email left the table (patient deleted or email changed).
+     */
+    public void markStale() {
+        staleEntries.incrementAndGet();
+    }
+
+    @Scheduled(fixedDelayString = "${patient.email-filter.check-interval-ms:60000}")
+    public void rebuildIfNeeded() {
+        FilterState state = current;
+        if (state == null) {
+            return;
+        }
+        long count = state.filter().approximateElementCount();
+        if (count > state.expectedInsertions() || staleEntries.get() > count * maxStaleRatio) {
+            rebuildAsync();
+        }
+    }
+
+    public void rebuildAsync() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        rebuildExecutor.execute(() -> {
+            try {
+                rebuild();
+            } catch (Exception e) {
+                log.error("Error rebuilding the email filter: {}", e.getMessage(), e);
+            } finally {
+                rebuilding.set(false);
+            }
+        });
+    }
+
+    private void rebuild() {
+        long startedAt = System.currentTimeMillis();
+        long expected = Math.max(expectedInsertions, patientRepository.count() * 2);
+        BloomFilter<CharSequence> next = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), expected, fpp);
+
+        // reset before streaming, removals that happen during the rebuild count against the new filter
+        swapLock.writeLock().lock();
+        try {
+            staleEntries.set(0);
+            pending = next;
+            // may commit after the snapshot of the stream below
+            uncommitted.keySet().forEach(next::put);
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+
+        FilterState rebuilt = null;
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<String> emails = patientRepository.streamAllEmails()) {
+                    emails.forEach(next::put);
+                }
+            });
+            rebuilt = new FilterState(next, expected, optimalBitSize(expected, fpp));
+        } finally {
+            swapLock.writeLock().lock();
+            try {
+                if (rebuilt != null) {
+                    current = rebuilt;
+                }
+                pending = null;
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+        }
+
+        log.info("Email filter rebuilt with {} emails in {} ms", next.approximateElementCount(),
+                System.currentTimeMillis() - startedAt);
+    }
+
+    // same sizing formula the bloom filter uses: m = -n * ln(p) / (ln 2)^2
+    private static long optimalBitSize(long expectedInsertions, double fpp) {
+        return (long) (-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,72 @@
+package com.bwagih.patientservice.service;
+
+import com.bwagih.patientservice.dto.APIBusinessLogicResponse;
+import com.bwagih.patientservice.dto.PatientResponseDTO;
+import com.bwagih.patientservice.utils.PatientETag;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Read-through cache of the encoded GET /patients/{id} response, a hit is written to the response as is,
+ * without mapping, wrapping or serializing anything. The JSON is gzipped once when it is encoded, for the
+ * clients sending Accept-Encoding: gzip. Entries are evicted together with the {@link PatientService#PATIENT_CACHE}
+ * entries on update, patch and delete.
+ */
+@Component
+public class PatientResponseCache {
+
+    private final PatientService patientService;
+    private final ObjectMapper objectMapper;
+
+    public PatientResponseCache(PatientService patientService, ObjectMapper objectMapper) {
+        this.patientService = patientService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * The response timestamp is the time the entry was encoded.
+     */
+    @Cacheable(cacheNames = PatientService.PATIENT_RESPONSE_CACHE, key = "#id", sync = true)
+    public EncodedResponse getPatient(UUID id) {
+        PatientResponseDTO patient = patientService.getPatientById(id);
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(APIBusinessLogicResponse.success(patient));
+            byte[] gzip = gzip(json);
+            // small bodies do not shrink, these are always sent as plain JSON
+            return gzip.length < json.length
+                    ? new EncodedResponse(json, PatientETag.of(patient), gzip, PatientETag.ofGzip(patient))
+                    : new EncodedResponse(json, PatientETag.of(patient), null, null);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 2 + 32);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * @param gzip     the gzipped JSON, null when compressing does not make it smaller
+     * @param gzipETag the tag of the gzipped JSON, strong tags differ between content codings
+     */
+    public record EncodedResponse(byte[] json, String eTag, byte[] gzip, String gzipETag) {
+
+        public boolean hasGzip() {
+            return gzip != null;
+        }
+    }
+}
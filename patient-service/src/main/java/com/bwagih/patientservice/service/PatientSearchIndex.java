@@ -0,0 +1,286 @@
+package com.bwagih.patientservice.service;
+
+import com.bwagih.patientservice.dto.PatientResponseDTO;
+import com.bwagih.patientservice.dto.PatientSearchResultDTO;
+import com.bwagih.patientservice.mapper.PatientMapper;
+import com.bwagih.patientservice.model.Patient;
+import com.bwagih.patientservice.model.PatientSummary;
+import com.bwagih.patientservice.repository.PatientRepository;
+import com.bwagih.patientservice.utils.ThreadFactories;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory n-gram index over the patient name, email and address.
+ * Every word is indexed by its 1 and 2 character prefixes (for short queries) and by its trigrams,
+ * a query matches the patients sharing enough of its grams, which tolerates typos and partial words.
+ * The index is loaded page by page from the repository in the background and kept in sync by {@link PatientService}.
+ * Writes are serialized, searches run lock-free against the concurrent maps.
+ */
+@Component
+public class PatientSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(PatientSearchIndex.class);
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int LOAD_PAGE_SIZE = 1000;
+
+    private final PatientRepository patientRepository;
+    private final ExecutorService loadExecutor;
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private final Map<UUID, PatientResponseDTO> documents = new ConcurrentHashMap<>();
+    private final Map<String, Set<UUID>> postings = new ConcurrentHashMap<>();
+
+    // ids removed while the initial load runs, so a page read before the delete does not bring them back
+    private final Set<UUID> removedDuringLoad = ConcurrentHashMap.newKeySet();
+    // ids are never reused, an index call after the remove comes from a change that committed before the delete
+    // and ran its callback late, these callbacks run right after their commit so the ids are only kept for a while
+    private final Cache<UUID, Boolean> recentlyRemoved = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .maximumSize(100_000)
+            .build();
+    private volatile boolean loading;
+
+    @Value("${patient.search.min-similarity:0.6}") double minSimilarity;
+
+    public PatientSearchIndex(PatientRepository patientRepository,
+                              @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.patientRepository = patientRepository;
+        this.loadExecutor = Executors.newSingleThreadExecutor(ThreadFactories.named("patient-search-index-load", virtualThreads));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        loading = true;
+        loadExecutor.execute(() -> {
+            try {
+                load();
+            } catch (Exception e) {
+                log.error("Error loading the patient search index: {}", e.getMessage(), e);
+            } finally {
+                loading = false;
+                removedDuringLoad.clear();
+            }
+        });
+    }
+
+    private void load() {
+        long startedAt = System.currentTimeMillis();
+        PageRequest pageRequest = PageRequest.of(0, LOAD_PAGE_SIZE);
+
+        List<PatientSummary> page = patientRepository.findFirstPage(pageRequest);
+        while (!page.isEmpty()) {
+            for (PatientSummary patient : page) {
+                indexLoaded(patient);
+            }
+            PatientSummary last = page.get(page.size() - 1);
+            page = page.size() < LOAD_PAGE_SIZE
+                    ? List.of()
+                    : patientRepository.findPageAfter(last.registeredDate(), last.id(), pageRequest);
+        }
+
+        log.info("Patient search index loaded with {} patients and {} grams in {} ms",
+                documents.size(), postings.size(), System.currentTimeMillis() - startedAt);
+    }
+
+    /**
+     * Add the patient to the index or replace its previous version.
+     */
+    public void index(Patient patient) {
+        index(patient.getId(), PatientMapper.toDTO(patient));
+    }
+
+    private void indexLoaded(PatientSummary patient) {
+        index(patient.id(), PatientMapper.toDTO(patient));
+    }
+
+    /**
+     * A document may be older than the indexed one: a loaded row read before {@link PatientService} indexed a change,
+     * or the after commit callbacks of two updates running in reverse order. It is skipped when the patient was
+     * removed meanwhile or is already indexed with a newer version.
+     */
+    private void index(UUID id, PatientResponseDTO document) {
+        writeLock.lock();
+        try {
+            if (removedDuringLoad.contains(id) || recentlyRemoved.getIfPresent(id) != null) {
+                return;
+            }
+            PatientResponseDTO indexed = documents.get(id);
+            if (indexed != null && indexed.getVersion() > document.getVersion()) {
+                return;
+            }
+            PatientResponseDTO previous = documents.put(id, document);
+            if (previous != null) {
+                for (String gram : documentGrams(previous)) {
+                    removePosting(gram, id);
+                }
+            }
+            for (String gram : documentGrams(document)) {
+                postings.computeIfAbsent(gram, key -> ConcurrentHashMap.newKeySet()).add(id);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void remove(UUID id) {
+        writeLock.lock();
+        try {
+            if (loading) {
+                removedDuringLoad.add(id);
+            }
+            recentlyRemoved.put(id, Boolean.TRUE);
+            PatientResponseDTO previous = documents.remove(id);
+            if (previous != null) {
+                for (String gram : documentGrams(previous)) {
+                    removePosting(gram, id);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void removePosting(String gram, UUID id) {
+        Set<UUID> ids = postings.get(gram);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+    /**
+     * Rank the patients matching the query and return the requested page of the top results.
+     */
+    public PatientSearchResultDTO search(String query, int page, int size) {
+        String normalizedQuery = query.trim().toLowerCase(Locale.ROOT);
+        Set<String> queryGrams = queryGrams(normalizedQuery);
+        if (queryGrams.isEmpty()) {
+            return new PatientSearchResultDTO(List.of(), page, size, 0);
+        }
+
+        // count how many of the query grams every candidate shares
+        Map<UUID, Integer> matches = new HashMap<>();
+        for (String gram : queryGrams) {
+            Set<UUID> ids = postings.get(gram);
+            if (ids != null) {
+                for (UUID id : ids) {
+                    matches.merge(id, 1, Integer::sum);
+                }
+            }
+        }
+
+        // keep only the top (page + 1) * size results in a min-heap instead of sorting every candidate
+        int limit = (page + 1) * size;
+        int minMatches = (int) Math.max(1, Math.ceil(queryGrams.size() * minSimilarity));
+        PriorityQueue<ScoredPatient> top = new PriorityQueue<>(Comparator.comparingDouble(ScoredPatient::score));
+        int total = 0;
+        for (Map.Entry<UUID, Integer> match : matches.entrySet()) {
+            if (match.getValue() < minMatches) {
+                continue;
+            }
+            PatientResponseDTO document = documents.get(match.getKey());
+            if (document == null) {
+                continue;
+            }
+            total++;
+            double score = (double) match.getValue() / queryGrams.size() + exactMatchBoost(document, normalizedQuery);
+            top.offer(new ScoredPatient(document, score));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+
+        List<ScoredPatient> ranked = new ArrayList<>(top);
+        ranked.sort(Comparator.comparingDouble(ScoredPatient::score).reversed()
+                .thenComparing(scored -> scored.patient().getName()));
+
+        List<PatientResponseDTO> content = ranked.stream()
+                .skip((long) page * size)
+                .map(ScoredPatient::patient)
+                .toList();
+        return new PatientSearchResultDTO(content, page, size, total);
+    }
+
+    private static double exactMatchBoost(PatientResponseDTO document, String query) {
+        if (document.getEmail().equalsIgnoreCase(query)) {
+            return 2.0;
+        }
+        if (document.getName().toLowerCase(Locale.ROOT).startsWith(query)) {
+            return 1.0;
+        }
+        if (document.getName().toLowerCase(Locale.ROOT).contains(query)
+                || document.getEmail().toLowerCase(Locale.ROOT).contains(query)
+                || document.getAddress().toLowerCase(Locale.ROOT).contains(query)) {
+            return 0.5;
+        }
+        return 0;
+    }
+
+    private static Set<String> documentGrams(PatientResponseDTO document) {
+        Set<String> grams = new HashSet<>();
+        for (String field : new String[]{document.getName(), document.getEmail(), document.getAddress()}) {
+            for (String word : words(field)) {
+                grams.add("^" + word.charAt(0));
+                if (word.length() > 1) {
+                    grams.add("^" + word.substring(0, 2));
+                }
+                addTrigrams(word, grams);
+            }
+        }
+        return grams;
+    }
+
+    private static Set<String> queryGrams(String query) {
+        Set<String> grams = new HashSet<>();
+        for (String word : words(query)) {
+            if (word.length() <= 2) {
+                grams.add("^" + word);
+            } else {
+                addTrigrams(word, grams);
+            }
+        }
+        return grams;
+    }
+
+    private static void addTrigrams(String word, Set<String> grams) {
+        for (int i = 0; i + 3 <= word.length(); i++) {
+            grams.add(word.substring(i, i + 3));
+        }
+    }
+
+    private static List<String> words(String value) {
+        if (value == null) {
+            return List.of();
+        }
+        return Arrays.stream(WORD_SEPARATOR.split(value.toLowerCase(Locale.ROOT)))
+                .filter(word -> !word.isEmpty())
+                .toList();
+    }
+
+    private record ScoredPatient(PatientResponseDTO patient, double score) {
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loadExecutor.shutdownNow();
+    }
+}
@@ -1,74 +1,410 @@
 package com.bwagih.patientservice.service;
 
+import billing.BillingRequest;
 import billing.BillingResponse;
+import com.bwagih.patientservice.config.ReplicaRoutingDataSource;
+import com.bwagih.patientservice.dto.BulkImportResultDTO;
+import com.bwagih.patientservice.dto.PatientImportRow;
+import com.bwagih.patientservice.dto.PatientLookupResultDTO;
+import com.bwagih.patientservice.dto.PatientPageDTO;
+import com.bwagih.patientservice.dto.PatientPatchRequestDTO;
 import com.bwagih.patientservice.dto.PatientRequestDTO;
 import com.bwagih.patientservice.dto.PatientResponseDTO;
+import com.bwagih.patientservice.dto.PatientSearchResultDTO;
+import com.bwagih.patientservice.dto.validators.CreatePatientValidationGroup;
 import com.bwagih.patientservice.exception.EmailAlreadyExistsException;
+import com.bwagih.patientservice.exception.InvalidImportFileException;
+import com.bwagih.patientservice.exception.PreconditionFailedException;
 import com.bwagih.patientservice.grpc.BillingServiceGrpcClient;
-import com.bwagih.patientservice.kafka.KafkaProducer;
+import com.bwagih.patientservice.kafka.OutboxPublisher;
 import com.bwagih.patientservice.mapper.PatientMapper;
 import com.bwagih.patientservice.model.Patient;
+import com.bwagih.patientservice.model.PatientChange;
+import com.bwagih.patientservice.model.PatientSummary;
 import com.bwagih.patientservice.repository.PatientRepository;
+import com.bwagih.patientservice.utils.PatientCursor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.PersistenceException;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import jakarta.validation.groups.Default;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import patient.events.PatientEvent;
 
 import java.text.MessageFormat;
 import java.time.LocalDate;
-import java.util.List;
-import java.util.UUID;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class PatientService {
+    private static final Logger log = LoggerFactory.getLogger(PatientService.class);
+
+    public static final String PATIENT_CACHE = "patients";
+    public static final String PATIENT_RESPONSE_CACHE = "patient-responses";
+
     private final PatientRepository patientRepository;
     private final BillingServiceGrpcClient billingServiceGrpcClient;
-    private final KafkaProducer kafkaProducer;
+    private final OutboxPublisher outboxPublisher;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final PatientEmailFilter emailFilter;
+    private final PatientSearchIndex searchIndex;
+    private final PatientChangeFeed changeFeed;
+
+    // createPatient stages, the transaction stage covers the other database stages plus the commit
+    private final Timer emailCheckTimer;
+    private final Timer insertTimer;
+    private final Timer outboxTimer;
+    private final Timer transactionTimer;
+    private final Timer searchIndexTimer;
+    private final Timer billingTimer;
 
-    public PatientService(PatientRepository patientRepository, BillingServiceGrpcClient billingServiceGrpcClient, KafkaProducer kafkaProducer) {
+    @Value("${patient.pagination.default-page-size:50}") int defaultPageSize;
+    @Value("${patient.pagination.max-page-size:500}") int maxPageSize;
+    @Value("${patient.import.chunk-size:500}") int importChunkSize;
+    @Value("${patient.import.max-reported-failures:1000}") int maxReportedFailures;
+    @Value("${patient.lookup.chunk-size:1000}") int lookupChunkSize;
+
+    public PatientService(PatientRepository patientRepository, BillingServiceGrpcClient billingServiceGrpcClient, OutboxPublisher outboxPublisher,
+                          EntityManager entityManager, PlatformTransactionManager transactionManager, Validator validator,
+                          PatientEmailFilter emailFilter, PatientSearchIndex searchIndex, PatientChangeFeed changeFeed,
+                          MeterRegistry meterRegistry) {
         this.patientRepository = patientRepository;
         this.billingServiceGrpcClient = billingServiceGrpcClient;
-        this.kafkaProducer = kafkaProducer;
+        this.outboxPublisher = outboxPublisher;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.validator = validator;
+        this.emailFilter = emailFilter;
+        this.searchIndex = searchIndex;
+        this.changeFeed = changeFeed;
+
+        this.emailCheckTimer = createStageTimer("email_check", meterRegistry);
+        this.insertTimer = createStageTimer("insert", meterRegistry);
+        this.outboxTimer = createStageTimer("outbox_write", meterRegistry);
+        this.transactionTimer = createStageTimer("transaction", meterRegistry);
+        this.searchIndexTimer = createStageTimer("search_index", meterRegistry);
+        this.billingTimer = createStageTimer("billing", meterRegistry);
+    }
+
+    private static Timer createStageTimer(String stage, MeterRegistry meterRegistry) {
+        return Timer.builder("patient.create.stage")
+                .tag("stage", stage)
+                .description("Time spent in each stage of a patient creation")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * Keyset pagination over (registeredDate, id), the cursor is the opaque token returned by the previous page.
+     * Rows are projected into {@link PatientSummary} so no managed entity is created on this path.
+     */
+    @Transactional(readOnly = true)
+    public PatientPageDTO getPatients(String cursor, Integer size) {
+        int pageSize = size == null ? defaultPageSize : Math.min(Math.max(size, 1), maxPageSize);
+
+        // fetch one extra row to find out if there is a next page without a count query
+        PageRequest limit = PageRequest.of(0, pageSize + 1);
+        List<PatientSummary> patients;
+        if (cursor == null || cursor.isBlank()) {
+            patients = patientRepository.findFirstPage(limit);
+        } else {
+            PatientCursor position = PatientCursor.decode(cursor);
+            patients = patientRepository.findPageAfter(position.registeredDate(), position.id(), limit);
+        }
+
+        boolean hasNext = patients.size() > pageSize;
+        List<PatientSummary> page = hasNext ? patients.subList(0, pageSize) : patients;
+
+        return PatientPageDTO.builder()
+                .content(page.stream().map(PatientMapper::toDTO).toList())
+                .nextCursor(hasNext ? PatientCursor.of(page.get(page.size() - 1)).encode() : null)
+                .hasNext(hasNext)
+                .build();
+    }
+
+    /**
+     * Stream every patient to the consumer as rows are fetched from the cursor,
+     * rows are projections so the persistence context does not grow with the table.
+     */
+    @Transactional(readOnly = true)
+    public void streamPatients(Consumer<PatientResponseDTO> consumer) {
+        try (Stream<PatientSummary> patients = patientRepository.streamAll()) {
+            patients.forEach(patient -> consumer.accept(PatientMapper.toDTO(patient)));
+        }
     }
 
-    public List<PatientResponseDTO> getPatients() {
-        List<Patient> patients = patientRepository.findAll();
+    /**
+     * Ranked search over the in-memory index of the patient name, email and address.
+     */
+    public PatientSearchResultDTO searchPatients(String query, int page, Integer size) {
+        int pageSize = size == null ? defaultPageSize : Math.min(Math.max(size, 1), maxPageSize);
+        return searchIndex.search(query, Math.max(page, 0), pageSize);
+    }
 
-        return patients.stream().map(PatientMapper::toDTO).toList();
+    /**
+     * The patient and its PATIENT_CREATED outbox event are committed first, the outbox relay ships the event to kafka.
+     * The billing account is then opened without blocking the caller, the response is built while the call is
+     * in flight and the returned future completes once billing answered.
+     */
+    public CompletableFuture<PatientResponseDTO> createPatient(PatientRequestDTO patientRequestDTO) {
+        return createPatient(patientRequestDTO, patient -> {
+        });
     }
 
+    /**
+     * @param onInsert runs in the transaction of the insert, once the patient got its id
+     */
+    public CompletableFuture<PatientResponseDTO> createPatient(PatientRequestDTO patientRequestDTO, Consumer<Patient> onInsert) {
+        Timer.Sample transaction = Timer.start();
+        Patient patient;
+        try {
+            patient = transactionTemplate.execute(status -> {
+                Timer.Sample emailCheck = Timer.start();
+                boolean emailExists = isExistsByEmail(patientRequestDTO);
+                emailCheck.stop(emailCheckTimer);
+                if (emailExists) {
+                    throw emailInUse(patientRequestDTO.getEmail());
+                }
 
-    public PatientResponseDTO createPatient(PatientRequestDTO patientRequestDTO) {
-        if (isExistsByEmail(patientRequestDTO)) {
-            throw new EmailAlreadyExistsException(MessageFormat.format("email: {0} already in use with another patient", patientRequestDTO.getEmail()));
+                Patient saved = insertTimer.record(() -> {
+                    emailFilter.put(patientRequestDTO.getEmail());
+                    return patientRepository.save(PatientMapper.toModel(patientRequestDTO));
+                });
+                outboxTimer.record(() -> publishPatientCreated(saved));
+                changeFeed.record(saved, PatientChange.Type.CREATED);
+                onInsert.accept(saved);
+                return saved;
+            });
+        } catch (DataIntegrityViolationException e) {
+            // a concurrent insert took the email between the check and the commit, the unique constraint caught it
+            if (patientRepository.existsByEmail(patientRequestDTO.getEmail())) {
+                throw emailInUse(patientRequestDTO.getEmail());
+            }
+            throw e;
         }
-        Patient patient = PatientMapper.toModel(patientRequestDTO);
-        patient = patientRepository.save(patient);
+        transaction.stop(transactionTimer);
+        searchIndexTimer.record(() -> searchIndex.index(patient));
 
-        BillingResponse billingAccount = billingServiceGrpcClient.createBillingAccount(patient.getId().toString(),
+        Timer.Sample billing = Timer.start();
+        CompletableFuture<BillingResponse> billingAccount = billingServiceGrpcClient.createBillingAccountAsync(patient.getId().toString(),
                 patient.getName(), patient.getEmail(), 0.0);
+        billingAccount.whenComplete((response, e) -> billing.stop(billingTimer));
+
+        PatientResponseDTO patientResponseDTO = PatientMapper.toDTO(patient);
+        return billingAccount.thenApply(response -> patientResponseDTO);
+    }
 
+    private void publishPatientCreated(Patient patient) {
         PatientEvent patientEvent = PatientEvent.newBuilder()
                 .setPatientId(patient.getId().toString())
                 .setName(patient.getName())
                 .setEmail(patient.getEmail())
                 .build();
 
-        kafkaProducer.sendEvent(patientEvent, "PATIENT_CREATED", "patient");
+        outboxPublisher.publish(patient.getId().toString(), patientEvent, "PATIENT_CREATED", "patient");
+    }
+
+    /**
+     * Import the rows chunk by chunk, each chunk costs one uniqueness query, one batched insert
+     * of the patients and their outbox events (committed on its own) and one concurrent billing fan-out.
+     * A failing row is reported in the result and never aborts the rest of the import. A file that cannot be read
+     * to the end (malformed JSON, an unterminated CSV quote, a broken upload) stops the import after the rows read
+     * so far, the chunks before are committed and billed already, so the partial result is returned with the error.
+     */
+    public BulkImportResultDTO importPatients(Iterator<PatientImportRow> rows) {
+        BulkImportResultDTO result = new BulkImportResultDTO();
+        result.setMaxReportedFailures(maxReportedFailures);
+        List<PatientImportRow> chunk = new ArrayList<>(importChunkSize);
+
+        InvalidImportFileException readFailure = null;
+        try {
+            while (rows.hasNext()) {
+                chunk.add(rows.next());
+                if (chunk.size() == importChunkSize) {
+                    importChunk(chunk, result);
+                    chunk.clear();
+                }
+            }
+        } catch (InvalidImportFileException e) {
+            readFailure = e;
+        }
+        if (!chunk.isEmpty()) {
+            importChunk(chunk, result);
+        }
+        if (readFailure != null) {
+            log.warn("Bulk import stopped after {} rows: {}", result.getTotal(), readFailure.getMessage());
+            result.abort(result.getTotal() + 1, readFailure.getMessage());
+        }
+
+        log.info("Bulk import finished. Total: {}, Created: {}, Failed: {}, Billing failed: {}",
+                result.getTotal(), result.getCreated(), result.getFailed(), result.getBillingFailed());
+        return result;
+    }
+
+    private void importChunk(List<PatientImportRow> chunk, BulkImportResultDTO result) {
+        result.setTotal(result.getTotal() + chunk.size());
+
+        // 1. validate the rows and drop the emails repeated inside the chunk
+        Map<String, PatientImportRow> rowsByEmail = new LinkedHashMap<>();
+        for (PatientImportRow row : chunk) {
+            String error = validateImportRow(row);
+            if (error == null && rowsByEmail.containsKey(row.patient().getEmail())) {
+                error = MessageFormat.format("email: {0} is repeated in the import", row.patient().getEmail());
+            }
+            if (error != null) {
+                result.addFailure(row.rowNumber(), row.patient() == null ? null : row.patient().getEmail(), error);
+            } else {
+                rowsByEmail.put(row.patient().getEmail(), row);
+            }
+        }
+        if (rowsByEmail.isEmpty()) {
+            return;
+        }
+
+        // 2. one set based uniqueness check for the whole chunk, limited to the emails the filter cannot rule out
+        List<String> candidateEmails = rowsByEmail.keySet().stream().filter(emailFilter::mightContain).toList();
+        Set<String> existingEmails = candidateEmails.isEmpty() ? Set.of() : patientRepository.findExistingEmails(candidateEmails);
+
+        List<Patient> patients = new ArrayList<>(rowsByEmail.size());
+        List<PatientImportRow> patientRows = new ArrayList<>(rowsByEmail.size());
+        for (PatientImportRow row : rowsByEmail.values()) {
+            if (existingEmails.contains(row.patient().getEmail())) {
+                result.addFailure(row.rowNumber(), row.patient().getEmail(),
+                        MessageFormat.format("email: {0} already in use with another patient", row.patient().getEmail()));
+                continue;
+            }
+            try {
+                patients.add(PatientMapper.toModel(row.patient()));
+                patientRows.add(row);
+            } catch (DateTimeParseException e) {
+                result.addFailure(row.rowNumber(), row.patient().getEmail(), "Invalid date format, expected format: yyyy-MM-dd");
+            }
+        }
+
+        // 3. batched insert together with the PATIENT_CREATED events,
+        // ids are generated in-process on persist so hibernate can batch the inserts
+        List<Patient> created = insertChunk(patients, patientRows, result);
+        if (created.isEmpty()) {
+            return;
+        }
+        result.setCreated(result.getCreated() + created.size());
+        created.forEach(searchIndex::index);
+
+        // 4. fan out billing for the whole chunk
+        List<BillingResponse> billingResponses = billingServiceGrpcClient.createBillingAccounts(created.stream()
+                .map(patient -> BillingRequest.newBuilder()
+                        .setPatientId(patient.getId().toString())
+                        .setName(patient.getName())
+                        .setEmail(patient.getEmail())
+                        .setInitialAmount(0.0)
+                        .build())
+                .toList());
+        long billingFailed = billingResponses.stream().filter(Objects::isNull).count();
+        if (billingFailed > 0) {
+            log.warn("{} billing accounts could not be created during bulk import", billingFailed);
+            result.setBillingFailed(result.getBillingFailed() + (int) billingFailed);
+        }
+    }
+
+    private String validateImportRow(PatientImportRow row) {
+        if (row.error() != null) {
+            return row.error();
+        }
+        Set<ConstraintViolation<PatientRequestDTO>> violations =
+                validator.validate(row.patient(), Default.class, CreatePatientValidationGroup.class);
+        return violations.stream()
+                .findFirst()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .orElse(null);
+    }
+
+    private List<Patient> insertChunk(List<Patient> patients, List<PatientImportRow> patientRows, BulkImportResultDTO result) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> persistAll(patients));
+            return patients;
+        } catch (PersistenceException | DataAccessException e) {
+            // a concurrent writer took one of the emails, retry row by row to isolate the failing ones
+            log.warn("Batched insert failed, retrying the chunk row by row: {}", e.getMessage());
+        }
+
+        List<Patient> created = new ArrayList<>(patients.size());
+        for (int i = 0; i < patients.size(); i++) {
+            Patient patient = patients.get(i);
+            patient.setId(null);
+            try {
+                transactionTemplate.executeWithoutResult(status -> persistAll(List.of(patient)));
+                created.add(patient);
+            } catch (PersistenceException | DataAccessException e) {
+                PatientImportRow row = patientRows.get(i);
+                result.addFailure(row.rowNumber(), patient.getEmail(), insertFailure(patient, e));
+            }
+        }
+        return created;
+    }
+
+    private String insertFailure(Patient patient, Exception e) {
+        if (patientRepository.existsByEmail(patient.getEmail())) {
+            return emailInUse(patient.getEmail()).getMessage();
+        }
+        return "Could not insert the patient: " + NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+    }
+
+    private void persistAll(List<Patient> patients) {
+        patients.forEach(patient -> emailFilter.put(patient.getEmail()));
+        patients.forEach(entityManager::persist);
+        patients.forEach(patient -> changeFeed.record(patient, PatientChange.Type.CREATED));
+        entityManager.flush();
+        entityManager.clear();
 
-        return PatientMapper.toDTO(patient);
+        patients.forEach(this::publishPatientCreated);
     }
 
     public boolean isExistsByEmail(PatientRequestDTO patientRequestDTO) {
-        return patientRepository.existsByEmail(patientRequestDTO.getEmail());
+        // the filter gives a definite "no", only a possible hit costs a query
+        return emailFilter.mightContain(patientRequestDTO.getEmail())
+                && patientRepository.existsByEmail(patientRequestDTO.getEmail());
     }
 
 
-    public PatientResponseDTO updatePatient(UUID id, PatientRequestDTO patientRequestDTO) {
+    /**
+     * @param expectedVersion the version the client read (If-Match), null to update unconditionally.
+     *                        The version column also rejects a concurrent update committed after the patient was loaded
+     */
+    @Transactional
+    @CacheEvict(cacheNames = {PATIENT_CACHE, PATIENT_RESPONSE_CACHE}, key = "#id")
+    public PatientResponseDTO updatePatient(UUID id, PatientRequestDTO patientRequestDTO, Long expectedVersion) {
 
         Patient patient = getPatient(id);
+        checkVersion(patient, expectedVersion);
 
-        if (patientRepository.existsByEmailAndIdNot(patientRequestDTO.getEmail(), id)) {
-            throw new EmailAlreadyExistsException(MessageFormat.format("email: {0} already in use with another patient", patientRequestDTO.getEmail()));
+        // the uniqueness check is only needed when the email actually changes
+        if (!patientRequestDTO.getEmail().equals(patient.getEmail())) {
+            checkEmailAvailable(patientRequestDTO.getEmail(), id);
+            emailFilter.put(patientRequestDTO.getEmail());
+            afterCommit(emailFilter::markStale);
         }
 
         patient.setName(patientRequestDTO.getName());
@@ -76,22 +412,158 @@ public class PatientService {
         patient.setEmail(patientRequestDTO.getEmail());
         patient.setDateOfBirth(LocalDate.parse(patientRequestDTO.getDateOfBirth()));
 
-        Patient updatedPatient = patientRepository.save(patient);
+        // flushed here so the new version is known to the response ETag and the change feed
+        Patient updatedPatient;
+        try {
+            updatedPatient = patientRepository.saveAndFlush(patient);
+        } catch (DataIntegrityViolationException e) {
+            // the email is the only unique column an update can violate, taken concurrently after the check
+            throw emailInUse(patientRequestDTO.getEmail());
+        }
+        changeFeed.record(updatedPatient, PatientChange.Type.UPDATED);
+        afterCommit(() -> searchIndex.index(updatedPatient));
         return PatientMapper.toDTO(updatedPatient);
     }
 
+    /**
+     * Apply only the fields sent in the request. Unchanged values are ignored, the email uniqueness query only runs
+     * when the email changes, and when nothing changed there is no write at all (dirty checking finds nothing to flush).
+     *
+     * @return true when the patient was modified
+     */
+    @Transactional
+    @CacheEvict(cacheNames = {PATIENT_CACHE, PATIENT_RESPONSE_CACHE}, key = "#id")
+    public boolean patchPatient(UUID id, PatientPatchRequestDTO patch, Long expectedVersion) {
+        Patient patient = getPatient(id);
+        checkVersion(patient, expectedVersion);
+        boolean modified = false;
+
+        if (patch.getEmail() != null && !patch.getEmail().equals(patient.getEmail())) {
+            checkEmailAvailable(patch.getEmail(), id);
+            emailFilter.put(patch.getEmail());
+            afterCommit(emailFilter::markStale);
+            patient.setEmail(patch.getEmail());
+            modified = true;
+        }
+        if (patch.getName() != null && !patch.getName().equals(patient.getName())) {
+            patient.setName(patch.getName());
+            modified = true;
+        }
+        if (patch.getAddress() != null && !patch.getAddress().equals(patient.getAddress())) {
+            patient.setAddress(patch.getAddress());
+            modified = true;
+        }
+        if (patch.getDateOfBirth() != null) {
+            LocalDate dateOfBirth = LocalDate.parse(patch.getDateOfBirth());
+            if (!dateOfBirth.equals(patient.getDateOfBirth())) {
+                patient.setDateOfBirth(dateOfBirth);
+                modified = true;
+            }
+        }
+
+        if (modified) {
+            // @DynamicUpdate limits the UPDATE to the changed columns, flushed now instead of on commit
+            // so the change feed gets the new version
+            try {
+                patientRepository.flush();
+            } catch (DataIntegrityViolationException e) {
+                // the email is the only unique column an update can violate, taken concurrently after the check
+                throw emailInUse(patient.getEmail());
+            }
+            changeFeed.record(patient, PatientChange.Type.UPDATED);
+            afterCommit(() -> searchIndex.index(patient));
+        }
+        return modified;
+    }
+
+    private void checkEmailAvailable(String email, UUID id) {
+        if (emailFilter.mightContain(email) && patientRepository.existsByEmailAndIdNot(email, id)) {
+            throw emailInUse(email);
+        }
+    }
+
+    private static EmailAlreadyExistsException emailInUse(String email) {
+        return new EmailAlreadyExistsException(MessageFormat.format("email: {0} already in use with another patient", email));
+    }
+
+    private void checkVersion(Patient patient, Long expectedVersion) {
+        if (expectedVersion != null && expectedVersion != patient.getVersion()) {
+            throw new PreconditionFailedException(MessageFormat.format("Patient {0} was modified, current version is {1}",
+                    patient.getId(), String.valueOf(patient.getVersion())));
+        }
+    }
+
     protected Patient getPatient(UUID id) {
         return patientRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(MessageFormat.format("Patient not found with ID: {0} ", id)));
     }
 
+    /**
+     * Read-through cache, sync makes concurrent misses for the same id wait for a single load.
+     * The load reads the primary, a lagging replica would cache the row from before the update that evicted it.
+     */
+    @Cacheable(cacheNames = PATIENT_CACHE, key = "#id", sync = true)
+    @Transactional(readOnly = true)
     public PatientResponseDTO getPatientById(UUID id) {
-        return PatientMapper.toDTO(getPatient(id));
+        return ReplicaRoutingDataSource.readFromPrimary(() -> patientRepository.findSummaryById(id))
+                .map(PatientMapper::toDTO)
+                .orElseThrow(() -> new EntityNotFoundException(MessageFormat.format("Patient not found with ID: {0} ", id)));
+    }
+
+    /**
+     * Resolve many ids with one IN query per chunk instead of a query per id, the chunks keep the
+     * bind parameter count and the statement size bounded. Unknown ids are reported instead of failing the lookup.
+     */
+    @Transactional(readOnly = true)
+    public PatientLookupResultDTO lookupPatients(List<UUID> ids) {
+        List<UUID> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+
+        Map<UUID, PatientSummary> found = new HashMap<>(distinctIds.size() * 2);
+        for (int from = 0; from < distinctIds.size(); from += lookupChunkSize) {
+            List<UUID> chunk = distinctIds.subList(from, Math.min(from + lookupChunkSize, distinctIds.size()));
+            for (PatientSummary patient : patientRepository.findSummariesByIdIn(chunk)) {
+                found.put(patient.id(), patient);
+            }
+        }
+
+        List<PatientResponseDTO> content = new ArrayList<>(found.size());
+        List<UUID> missing = new ArrayList<>();
+        for (UUID id : distinctIds) {
+            PatientSummary patient = found.get(id);
+            if (patient == null) {
+                missing.add(id);
+            } else {
+                content.add(PatientMapper.toDTO(patient));
+            }
+        }
+        return new PatientLookupResultDTO(content, missing);
     }
 
-    public void deletePatient(UUID id) {
+    @Transactional
+    @CacheEvict(cacheNames = {PATIENT_CACHE, PATIENT_RESPONSE_CACHE}, key = "#id")
+    public void deletePatient(UUID id, Long expectedVersion) {
         Patient patient = getPatient(id);
-        patientRepository.deleteById(id);
+        checkVersion(patient, expectedVersion);
+        // deleting the loaded instance keeps its version in the DELETE, a concurrent update in between fails it
+        patientRepository.delete(patient);
+        changeFeed.record(patient, PatientChange.Type.DELETED);
+        afterCommit(() -> {
+            emailFilter.markStale();
+            searchIndex.remove(id);
+        });
+    }
+
+    /**
+     * The search index and the stale count of the email filter follow the committed state, a transaction rolled back
+     * (e.g. the version check of the DELETE failing at commit) leaves them untouched.
+     */
+    private static void afterCommit(Runnable action) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
 
 
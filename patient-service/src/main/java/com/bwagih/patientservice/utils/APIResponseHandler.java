@@ -13,4 +13,15 @@ public final class APIResponseHandler {
                 .contentType(MediaType.APPLICATION_JSON)
                 .body(body);
     }
+
+    /**
+     * For GET requests spring compares the tag with If-None-Match and answers 304 without writing the body.
+     */
+    public static <RES extends APIBusinessLogicResponse<RESULT>, RESULT> ResponseEntity<RES> createResponse(HttpStatus statusCode, String eTag, RES body) {
+        return ResponseEntity
+                .status(statusCode)
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(eTag)
+                .body(body);
+    }
 }
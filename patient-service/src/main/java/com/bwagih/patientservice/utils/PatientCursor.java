@@ -0,0 +1,43 @@
+package com.bwagih.patientservice.utils;
+
+import com.bwagih.patientservice.exception.InvalidCursorException;
+import com.bwagih.patientservice.model.PatientSummary;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Keyset position over (registeredDate, id) encoded as an opaque, url-safe continuation token.
+ * Clients must treat the token as a black box, the format may change without notice.
+ */
+public record PatientCursor(LocalDate registeredDate, UUID id) {
+
+    private static final char SEPARATOR = '|';
+
+    public static PatientCursor of(PatientSummary patient) {
+        return new PatientCursor(patient.registeredDate(), patient.id());
+    }
+
+    public String encode() {
+        String raw = registeredDate.toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static PatientCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separatorIndex = raw.indexOf(SEPARATOR);
+            if (separatorIndex == -1) {
+                throw new InvalidCursorException("Invalid pagination cursor: " + token);
+            }
+            return new PatientCursor(
+                    LocalDate.parse(raw.substring(0, separatorIndex)),
+                    UUID.fromString(raw.substring(separatorIndex + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidCursorException("Invalid pagination cursor: " + token);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.bwagih.patientservice.utils;
+
+import com.bwagih.patientservice.dto.PatientPageDTO;
+import com.bwagih.patientservice.dto.PatientResponseDTO;
+import com.bwagih.patientservice.exception.PreconditionFailedException;
+
+import java.util.UUID;
+
+/**
+ * Strong entity tags derived from the patient version column, no body has to be serialized or hashed to compute them.
+ */
+public final class PatientETag {
+
+    private PatientETag() {
+    }
+
+    private static final String PROTOBUF_SUFFIX = "-pb";
+    private static final String GZIP_SUFFIX = "-gz";
+
+    public static String of(PatientResponseDTO patient) {
+        return "\"" + patient.getVersion() + "\"";
+    }
+
+    /**
+     * Strong tags identify one representation, the protobuf encoding gets its own tag.
+     */
+    public static String ofProtobuf(PatientResponseDTO patient) {
+        return "\"" + patient.getVersion() + PROTOBUF_SUFFIX + "\"";
+    }
+
+    /**
+     * The gzipped JSON is another representation than the identity JSON, so it gets its own tag too.
+     */
+    public static String ofGzip(PatientResponseDTO patient) {
+        return "\"" + patient.getVersion() + GZIP_SUFFIX + "\"";
+    }
+
+    /**
+     * A page changes when any of its patients, their order or the continuation token changes,
+     * so the tag is a hash over the (id, version) pairs and the cursor.
+     */
+    public static String of(PatientPageDTO page) {
+        long hash = 1125899906842597L;
+        for (PatientResponseDTO patient : page.getContent()) {
+            UUID id = UUID.fromString(patient.getId());
+            hash = 31 * hash + id.getMostSignificantBits();
+            hash = 31 * hash + id.getLeastSignificantBits();
+            hash = 31 * hash + patient.getVersion();
+        }
+        hash = 31 * hash + (page.getNextCursor() == null ? 0 : page.getNextCursor().hashCode());
+        return "\"p-" + Long.toHexString(hash) + "\"";
+    }
+
+    /**
+     * The page tag of the protobuf encoding.
+     */
+    public static String ofProtobuf(PatientPageDTO page) {
+        String tag = of(page);
+        return tag.substring(0, tag.length() - 1) + PROTOBUF_SUFFIX + "\"";
+    }
+
+    /**
+     * Weak comparison of the If-None-Match tags with a current tag, "*" matches any.
+     */
+    public static boolean matchesIfNoneMatch(String ifNoneMatch, String tag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the version required by an If-Match header, null when the header is absent or "*"
+     */
+    public static Long parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        // If-Match uses the strong comparison, a weak tag never matches
+        String tag = ifMatch.trim();
+        if (tag.length() < 3 || tag.charAt(0) != '"' || tag.charAt(tag.length() - 1) != '"') {
+            throw new PreconditionFailedException("If-Match must be a single strong ETag: " + ifMatch);
+        }
+        String version = tag.substring(1, tag.length() - 1);
+        // the tag of any representation of the version matches
+        if (version.endsWith(PROTOBUF_SUFFIX) || version.endsWith(GZIP_SUFFIX)) {
+            version = version.substring(0, version.length() - 3);
+        }
+        try {
+            return Long.parseLong(version);
+        } catch (NumberFormatException e) {
+            throw new PreconditionFailedException("If-Match does not match the current version: " + ifMatch);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.bwagih.patientservice.utils;
+
+import com.bwagih.patientservice.dto.PatientImportRow;
+import com.bwagih.patientservice.dto.PatientRequestDTO;
+import com.bwagih.patientservice.exception.InvalidImportFileException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Pull based reader over a bulk import upload, rows are parsed one at a time so the
+ * whole file is never held in memory.
+ * Supports a JSON array of {@link PatientRequestDTO} objects or a CSV file with a header line.
+ */
+public abstract class PatientImportReader implements Iterator<PatientImportRow>, Closeable {
+
+    private PatientImportRow next;
+    private boolean finished;
+    protected int rowNumber;
+
+    public static PatientImportReader json(ObjectMapper objectMapper, InputStream inputStream) throws IOException {
+        return new JsonReader(objectMapper, inputStream);
+    }
+
+    public static PatientImportReader csv(InputStream inputStream) throws IOException {
+        return new CsvReader(inputStream);
+    }
+
+    /**
+     * @return the next row or null when the input is exhausted
+     */
+    protected abstract PatientImportRow readRow() throws IOException;
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !finished) {
+            try {
+                next = readRow();
+            } catch (IOException e) {
+                throw new InvalidImportFileException("Could not read import file at row " + (rowNumber + 1), e);
+            }
+            finished = next == null;
+        }
+        return next != null;
+    }
+
+    @Override
+    public PatientImportRow next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        PatientImportRow row = next;
+        next = null;
+        return row;
+    }
+
+
+    private static final class JsonReader extends PatientImportReader {
+
+        private final ObjectMapper objectMapper;
+        private final JsonParser parser;
+
+        private JsonReader(ObjectMapper objectMapper, InputStream inputStream) throws IOException {
+            this.objectMapper = objectMapper;
+            this.parser = objectMapper.getFactory().createParser(inputStream);
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new InvalidImportFileException("Expected a JSON array of patients");
+            }
+        }
+
+        @Override
+        protected PatientImportRow readRow() throws IOException {
+            JsonToken token = parser.nextToken();
+            if (token == null || token == JsonToken.END_ARRAY) {
+                return null;
+            }
+            rowNumber++;
+            if (token != JsonToken.START_OBJECT) {
+                throw new InvalidImportFileException("Expected a JSON object at row " + rowNumber);
+            }
+            // read as a tree first, a value of the wrong type then only fails its own row
+            JsonNode row = objectMapper.readTree(parser);
+            try {
+                return PatientImportRow.of(rowNumber, objectMapper.treeToValue(row, PatientRequestDTO.class));
+            } catch (JsonMappingException e) {
+                return PatientImportRow.failed(rowNumber, "Invalid value for field: " + fieldPath(e));
+            }
+        }
+
+        private static String fieldPath(JsonMappingException e) {
+            return e.getPath().stream()
+                    .map(JsonMappingException.Reference::getFieldName)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.joining("."));
+        }
+
+        @Override
+        public void close() throws IOException {
+            parser.close();
+        }
+    }
+
+
+    private static final class CsvReader extends PatientImportReader {
+
+        private static final List<String> COLUMNS = List.of("name", "email", "address", "dateOfBirth", "registeredDate");
+
+        private final BufferedReader reader;
+        private final int[] columnIndexes = new int[COLUMNS.size()];
+
+        private CsvReader(InputStream inputStream) throws IOException {
+            this.reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+
+            String header = reader.readLine();
+            if (header == null) {
+                throw new InvalidImportFileException("CSV import file is empty");
+            }
+            List<String> headerFields = parseLine(header.replace("\uFEFF", ""));
+            for (int i = 0; i < COLUMNS.size(); i++) {
+                int index = indexOfIgnoreCase(headerFields, COLUMNS.get(i));
+                if (index == -1) {
+                    throw new InvalidImportFileException("CSV header is missing column: " + COLUMNS.get(i));
+                }
+                columnIndexes[i] = index;
+            }
+        }
+
+        @Override
+        protected PatientImportRow readRow() throws IOException {
+            String line;
+            do {
+                line = reader.readLine();
+                if (line == null) {
+                    return null;
+                }
+            } while (line.isBlank());
+
+            rowNumber++;
+            // a quoted field may span lines, the record ends with the line that closes its last quote
+            StringBuilder record = new StringBuilder(line);
+            while (insideQuotes(record)) {
+                String continuation = reader.readLine();
+                if (continuation == null) {
+                    throw new InvalidImportFileException("Unterminated quoted field at row " + rowNumber);
+                }
+                record.append('\n').append(continuation);
+            }
+            List<String> fields = parseLine(record.toString());
+            String[] values = new String[COLUMNS.size()];
+            for (int i = 0; i < columnIndexes.length; i++) {
+                if (columnIndexes[i] >= fields.size()) {
+                    return PatientImportRow.failed(rowNumber, "Missing value for column: " + COLUMNS.get(i));
+                }
+                values[i] = fields.get(columnIndexes[i]);
+            }
+
+            return PatientImportRow.of(rowNumber, PatientRequestDTO.builder()
+                    .name(values[0])
+                    .email(values[1])
+                    .address(values[2])
+                    .dateOfBirth(values[3])
+                    .registeredDate(values[4])
+                    .build());
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+
+        private static int indexOfIgnoreCase(List<String> values, String value) {
+            for (int i = 0; i < values.size(); i++) {
+                if (values.get(i).trim().equalsIgnoreCase(value)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        // every quote opens or closes a quoted field and an escaped quote is two of them, an odd count leaves one open
+        private static boolean insideQuotes(CharSequence record) {
+            int quotes = 0;
+            for (int i = 0; i < record.length(); i++) {
+                if (record.charAt(i) == '"') {
+                    quotes++;
+                }
+            }
+            return quotes % 2 == 1;
+        }
+
+        // RFC 4180 style fields: comma separated, optionally double-quoted with "" as an escaped quote
+        private static List<String> parseLine(String line) {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        field.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString().trim());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            fields.add(field.toString().trim());
+            return fields;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.bwagih.patientservice.utils;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Thread factories for the internal executors, following the spring.threads.virtual.enabled switch
+ * so blocking work (JPA, gRPC, kafka acks) does not hold a platform thread when the virtual mode is on.
+ */
+public final class ThreadFactories {
+
+    private ThreadFactories() {
+    }
+
+    public static ThreadFactory named(String prefix, boolean virtual) {
+        Thread.Builder builder = virtual ? Thread.ofVirtual() : Thread.ofPlatform();
+        return builder.name(prefix + "-", 1).factory();
+    }
+
+    /**
+     * A fixed pool of platform threads, or a thread per task when virtual threads are enabled
+     * (virtual threads are cheap and must not be pooled).
+     */
+    public static ExecutorService newExecutor(String prefix, int platformThreads, boolean virtual) {
+        ThreadFactory threadFactory = named(prefix, virtual);
+        return virtual
+                ? Executors.newThreadPerTaskExecutor(threadFactory)
+                : Executors.newFixedThreadPool(platformThreads, threadFactory);
+    }
+}
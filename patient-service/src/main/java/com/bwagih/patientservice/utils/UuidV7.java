@@ -0,0 +1,37 @@
+package com.bwagih.patientservice.utils;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time-ordered UUID version 7 (RFC 9562): 48 bit unix epoch milliseconds, version, 12 bit counter, variant and 62 random bits.
+ * The counter keeps the ids generated in the same millisecond monotonic inside this JVM (RFC 9562 section 6.2, method 1),
+ * so consecutive inserts land on the right-most page of the primary key index instead of a random one.
+ */
+public final class UuidV7 {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final int COUNTER_BITS = 12;
+
+    // (epoch millis << COUNTER_BITS) | counter of the last generated id
+    private static final AtomicLong LAST_STATE = new AtomicLong();
+
+    private UuidV7() {
+    }
+
+    public static UUID randomUUID() {
+        long now = System.currentTimeMillis();
+        long state = LAST_STATE.updateAndGet(previous ->
+                // a new millisecond restarts the counter, otherwise (same millisecond or clock going back)
+                // the counter is bumped and an overflow carries into the timestamp, which keeps the order
+                now > previous >>> COUNTER_BITS ? now << COUNTER_BITS : previous + 1);
+
+        long timestamp = state >>> COUNTER_BITS;
+        long counter = state & 0xFFFL;
+
+        long mostSignificantBits = (timestamp << 16) | 0x7000L | counter;
+        long leastSignificantBits = (RANDOM.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSignificantBits, leastSignificantBits);
+    }
+}
@@ -9,9 +9,63 @@ CREATE TABLE IF NOT EXISTS patient
     email           VARCHAR(255) UNIQUE NOT NULL,
     address         VARCHAR(255)        NOT NULL,
     date_of_birth   DATE                NOT NULL,
-    registered_date DATE                NOT NULL
+    registered_date DATE                NOT NULL,
+    version         BIGINT              NOT NULL DEFAULT 0
 );
 
+-- Optimistic locking version, also the source of the patient ETags
+ALTER TABLE patient ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
+-- Ensure the transactional outbox exists, the relay drains it to kafka
+CREATE SEQUENCE IF NOT EXISTS outbox_event_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS outbox_event
+(
+    id           BIGINT PRIMARY KEY,
+    aggregate_id VARCHAR(255)             NOT NULL,
+    event_type   VARCHAR(255)             NOT NULL,
+    content_type VARCHAR(255)             NOT NULL,
+    topic        VARCHAR(255)             NOT NULL,
+    payload      BYTEA                    NOT NULL,
+    created_at   TIMESTAMP WITH TIME ZONE NOT NULL
+);
+
+-- the encoding of the payload, the rows written before it were all protobuf
+ALTER TABLE outbox_event ADD COLUMN IF NOT EXISTS content_type VARCHAR(255) NOT NULL DEFAULT 'application/x-protobuf';
+
+-- the relay claims the oldest pending event of every aggregate
+CREATE INDEX IF NOT EXISTS outbox_event_aggregate_idx ON outbox_event (aggregate_id, id);
+
+-- Ensure the patient change log exists, it backs GET /patients/changes for the subscribers behind the in-memory buffer
+CREATE SEQUENCE IF NOT EXISTS patient_change_seq START WITH 1 INCREMENT BY 1;
+-- one number per fetch (was pooled by 50), pooled blocks hand the numbers out of the order of the changes
+ALTER SEQUENCE patient_change_seq INCREMENT BY 1;
+
+CREATE TABLE IF NOT EXISTS patient_change
+(
+    id          BIGINT PRIMARY KEY,
+    patient_id  UUID                     NOT NULL,
+    change_type VARCHAR(16)              NOT NULL,
+    version     BIGINT                   NOT NULL,
+    changed_at  TIMESTAMP WITH TIME ZONE NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS patient_change_changed_at_idx ON patient_change (changed_at);
+
+-- Ensure the idempotency keys of POST /patients exist, only used with patient.idempotency.persistent=true
+CREATE TABLE IF NOT EXISTS idempotency_key
+(
+    idempotency_key VARCHAR(255) PRIMARY KEY,
+    fingerprint     VARCHAR(64)              NOT NULL,
+    patient_id      UUID                     NOT NULL,
+    created_at      TIMESTAMP WITH TIME ZONE NOT NULL,
+    response        BYTEA,
+    patient_version BIGINT
+);
+-- the replayed response of the first request, added after the table
+ALTER TABLE idempotency_key ADD COLUMN IF NOT EXISTS response BYTEA;
+ALTER TABLE idempotency_key ADD COLUMN IF NOT EXISTS patient_version BIGINT;
+
 -- Insert well-known UUIDs for specific patients
 INSERT INTO patient (id, name, email, address, date_of_birth, registered_date)
 SELECT '123e4567-e89b-12d3-a456-426614174000',
@@ -0,0 +1,95 @@
+package com.bwagih.patientservice.benchmark;
+
+import ch.qos.logback.classic.Level;
+import com.bwagih.patientservice.dto.PatientResponseDTO;
+import com.bwagih.patientservice.kafka.EventCodecRegistry;
+import com.bwagih.patientservice.kafka.KafkaProducer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import patient.events.PatientEvent;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The relay path of an event (encoded by the EventCodecRegistry, wrapped in a record with its headers, handed to
+ * KafkaProducer.send) with both codecs, a protobuf message and a plain object encoded as smile.
+ * The kafka send is stubbed out so only the encoding, the record building and the backpressure accounting is measured.
+ * Run with: ./mvnw -Pbenchmark test-compile exec:exec -Djmh.include=KafkaProducerBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KafkaProducerBenchmark {
+
+    private StubKafkaTemplate kafkaTemplate;
+    private KafkaProducer kafkaProducer;
+    private EventCodecRegistry codecRegistry;
+    private PatientEvent protobufPayload;
+    private PatientResponseDTO smilePayload;
+
+    @Setup
+    public void setup() {
+        // logging is turned down so the benchmark measures the envelope instead of console I/O
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+
+        kafkaTemplate = new StubKafkaTemplate();
+        kafkaProducer = new KafkaProducer(kafkaTemplate, new SimpleMeterRegistry(), 32 * 1024 * 1024, 5000);
+        codecRegistry = new EventCodecRegistry();
+        protobufPayload = PatientEvent.newBuilder()
+                .setPatientId("123e4567-e89b-12d3-a456-426614174000")
+                .setName("John Doe")
+                .setEmail("john.doe@example.com")
+                .build();
+        smilePayload = new PatientResponseDTO("123e4567-e89b-12d3-a456-426614174000", "John Doe",
+                "john.doe@example.com", "123 Main St, Springfield", "1985-06-15", 0);
+    }
+
+    @Benchmark
+    public long sendProtobufEvent() {
+        send(protobufPayload.getPatientId(), protobufPayload, "PATIENT_CREATED");
+        return kafkaTemplate.sentBytes;
+    }
+
+    @Benchmark
+    public long sendSmileEvent() {
+        send(smilePayload.getId(), smilePayload, "PATIENT_UPDATED");
+        return kafkaTemplate.sentBytes;
+    }
+
+    private void send(String key, Object payload, String eventType) {
+        EventCodecRegistry.EncodedEvent encoded = codecRegistry.encode(eventType, payload);
+        kafkaProducer.send(KafkaProducer.record("patient", key, "42", eventType, encoded.contentType(),
+                Instant.now(), encoded.bytes()));
+    }
+
+    /**
+     * Accepts the record without a producer, the encoded size is kept so the encoding cannot be optimized away.
+     */
+    private static final class StubKafkaTemplate extends KafkaTemplate<String, byte[]> {
+
+        private static final CompletableFuture<SendResult<String, byte[]>> SENT = CompletableFuture.completedFuture(null);
+
+        private long sentBytes;
+
+        private StubKafkaTemplate() {
+            super(new DefaultKafkaProducerFactory<>(Map.of()));
+        }
+
+        @Override
+        public CompletableFuture<SendResult<String, byte[]>> send(ProducerRecord<String, byte[]> record) {
+            sentBytes += record.value().length;
+            return SENT;
+        }
+    }
+}
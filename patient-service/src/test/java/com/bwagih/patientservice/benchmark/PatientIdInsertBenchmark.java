@@ -0,0 +1,96 @@
+package com.bwagih.patientservice.benchmark;
+
+import com.bwagih.patientservice.utils.UuidV7;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Insert throughput of random (version 4) against time-ordered (version 7) primary keys on a copy of the patient table.
+ * Random keys land on a random leaf of the primary key index, so once the index no longer fits in memory every insert
+ * reads a page and splits it, time-ordered keys always append to the right-most leaf.
+ * Not a unit test, run it manually against a disposable database:
+ * <pre>
+ * java -Dbenchmark.jdbc-url=jdbc:postgresql://localhost:5432/db -Dbenchmark.user=admin_user -Dbenchmark.password=password PatientIdInsertBenchmark
+ * </pre>
+ * Tunables: benchmark.rows (default 10000000), benchmark.batch-size (default 1000) and
+ * benchmark.report-every (default 1000000, rows between two throughput lines).
+ */
+public class PatientIdInsertBenchmark {
+
+    private static final String JDBC_URL = System.getProperty("benchmark.jdbc-url", "jdbc:postgresql://localhost:5432/db");
+    private static final String USER = System.getProperty("benchmark.user", "admin_user");
+    private static final String PASSWORD = System.getProperty("benchmark.password", "password");
+    private static final long ROWS = Long.getLong("benchmark.rows", 10_000_000L);
+    private static final int BATCH_SIZE = Integer.getInteger("benchmark.batch-size", 1_000);
+    private static final long REPORT_EVERY = Long.getLong("benchmark.report-every", 1_000_000L);
+
+    public static void main(String[] args) throws Exception {
+        try (Connection connection = DriverManager.getConnection(JDBC_URL, USER, PASSWORD)) {
+            connection.setAutoCommit(false);
+            System.out.printf("Inserting %d rows per id scheme into %s, batches of %d%n", ROWS, JDBC_URL, BATCH_SIZE);
+            run(connection, "benchmark_patient_v4", UUID::randomUUID);
+            run(connection, "benchmark_patient_v7", UuidV7::randomUUID);
+        }
+    }
+
+    private static void run(Connection connection, String table, Supplier<UUID> ids) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + table);
+            // same shape as the patient table, including the unique email index
+            statement.execute("CREATE TABLE " + table + " (" +
+                    "id UUID PRIMARY KEY, " +
+                    "name VARCHAR(255) NOT NULL, " +
+                    "email VARCHAR(255) UNIQUE NOT NULL, " +
+                    "address VARCHAR(255) NOT NULL, " +
+                    "date_of_birth DATE NOT NULL, " +
+                    "registered_date DATE NOT NULL)");
+            connection.commit();
+        }
+
+        System.out.printf("%s:%n", table);
+        Date dateOfBirth = Date.valueOf(LocalDate.of(1990, 1, 1));
+        Date registeredDate = Date.valueOf(LocalDate.now());
+        String sql = "INSERT INTO " + table + " (id, name, email, address, date_of_birth, registered_date) VALUES (?, ?, ?, ?, ?, ?)";
+
+        long startedAt = System.nanoTime();
+        long segmentStartedAt = startedAt;
+        try (PreparedStatement insert = connection.prepareStatement(sql)) {
+            for (long row = 1; row <= ROWS; row++) {
+                insert.setObject(1, ids.get());
+                insert.setString(2, "Patient " + row);
+                insert.setString(3, "patient" + row + "@example.com");
+                insert.setString(4, row + " Main Street");
+                insert.setDate(5, dateOfBirth);
+                insert.setDate(6, registeredDate);
+                insert.addBatch();
+
+                if (row % BATCH_SIZE == 0 || row == ROWS) {
+                    insert.executeBatch();
+                    connection.commit();
+                }
+                if (row % REPORT_EVERY == 0 || row == ROWS) {
+                    long now = System.nanoTime();
+                    long segmentRows = row % REPORT_EVERY == 0 ? REPORT_EVERY : row % REPORT_EVERY;
+                    System.out.printf("  rows=%d segment=%.0f rows/s%n", row, segmentRows / ((now - segmentStartedAt) / 1_000_000_000.0));
+                    segmentStartedAt = now;
+                }
+            }
+        }
+
+        System.out.printf("  total=%.0f rows/s elapsed=%.1fs%s%n", ROWS / ((System.nanoTime() - startedAt) / 1_000_000_000.0),
+                (System.nanoTime() - startedAt) / 1_000_000_000.0, indexSize(connection, table));
+    }
+
+    // primary key index size, postgres only
+    private static String indexSize(Connection connection, String table) {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT pg_size_pretty(pg_relation_size('" + table + "_pkey'))")) {
+            return resultSet.next() ? " pkey-index=" + resultSet.getString(1) : "";
+        } catch (SQLException e) {
+            return "";
+        }
+    }
+}
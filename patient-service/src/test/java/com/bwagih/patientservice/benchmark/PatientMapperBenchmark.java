@@ -0,0 +1,61 @@
+package com.bwagih.patientservice.benchmark;
+
+import com.bwagih.patientservice.dto.PatientRequestDTO;
+import com.bwagih.patientservice.dto.PatientResponseDTO;
+import com.bwagih.patientservice.mapper.PatientMapper;
+import com.bwagih.patientservice.model.Patient;
+import com.bwagih.patientservice.model.PatientSummary;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PatientMapper conversions on the request and response paths.
+ * Run with: ./mvnw -Pbenchmark test-compile exec:exec -Djmh.include=PatientMapperBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PatientMapperBenchmark {
+
+    private Patient patient;
+    private PatientSummary summary;
+    private PatientRequestDTO request;
+
+    @Setup
+    public void setup() {
+        UUID id = UUID.fromString("123e4567-e89b-12d3-a456-426614174000");
+        LocalDate dateOfBirth = LocalDate.of(1985, 6, 15);
+        LocalDate registeredDate = LocalDate.of(2024, 1, 10);
+
+        patient = new Patient(id, "John Doe", "john.doe@example.com", "123 Main St, Springfield", dateOfBirth, registeredDate, 3);
+        summary = new PatientSummary(id, "John Doe", "john.doe@example.com", "123 Main St, Springfield", dateOfBirth, registeredDate, 3);
+        request = PatientRequestDTO.builder()
+                .name("John Doe")
+                .email("john.doe@example.com")
+                .address("123 Main St, Springfield")
+                .dateOfBirth("1985-06-15")
+                .registeredDate("2024-01-10")
+                .build();
+    }
+
+    @Benchmark
+    public PatientResponseDTO entityToDTO() {
+        return PatientMapper.toDTO(patient);
+    }
+
+    @Benchmark
+    public PatientResponseDTO summaryToDTO() {
+        return PatientMapper.toDTO(summary);
+    }
+
+    @Benchmark
+    public Patient requestToModel() {
+        return PatientMapper.toModel(request);
+    }
+}
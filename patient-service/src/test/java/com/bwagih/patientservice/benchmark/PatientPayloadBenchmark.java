@@ -0,0 +1,98 @@
+package com.bwagih.patientservice.benchmark;
+
+import com.bwagih.patientservice.dto.APIBusinessLogicResponse;
+import com.bwagih.patientservice.dto.PatientPageDTO;
+import com.bwagih.patientservice.dto.PatientRequestDTO;
+import com.bwagih.patientservice.dto.PatientResponseDTO;
+import com.bwagih.patientservice.mapper.PatientProtoMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.openjdk.jmh.annotations.*;
+import patient.api.PatientPage;
+import patient.api.PatientRequest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON against protobuf for the patient payloads, as written by PatientController for each content type:
+ * encoding a page of patients (mapping included) and decoding a create request.
+ * The encoded sizes are printed once in the setup.
+ * Run with: ./mvnw -Pbenchmark test-compile exec:exec -Djmh.include=PatientPayloadBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PatientPayloadBenchmark {
+
+    @Param({"1", "50"})
+    private int pageSize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private PatientPageDTO page;
+    private byte[] requestJson;
+    private byte[] requestProtobuf;
+
+    @Setup
+    public void setup() throws IOException {
+        List<PatientResponseDTO> content = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            content.add(PatientResponseDTO.builder()
+                    .id(String.format("123e4567-e89b-12d3-a456-%012d", i))
+                    .name("John Doe " + i)
+                    .email("john.doe" + i + "@example.com")
+                    .address(i + " Main St, Springfield")
+                    .dateOfBirth("1985-06-15")
+                    .version(i)
+                    .build());
+        }
+        page = new PatientPageDTO(content, "MjAyNC0wMS0xMHwxMjNlNDU2Nw", true);
+
+        PatientRequestDTO request = PatientRequestDTO.builder()
+                .name("John Doe")
+                .email("john.doe@example.com")
+                .address("123 Main St, Springfield")
+                .dateOfBirth("1985-06-15")
+                .registeredDate("2024-01-10")
+                .build();
+        requestJson = objectMapper.writeValueAsBytes(request);
+        requestProtobuf = PatientRequest.newBuilder()
+                .setName(request.getName())
+                .setEmail(request.getEmail())
+                .setAddress(request.getAddress())
+                .setDateOfBirth(request.getDateOfBirth())
+                .setRegisteredDate(request.getRegisteredDate())
+                .build()
+                .toByteArray();
+
+        System.out.printf("%npage of %d: json=%d bytes protobuf=%d bytes, request: json=%d bytes protobuf=%d bytes%n",
+                pageSize, encodePageJson().length, encodePageProtobuf().length, requestJson.length, requestProtobuf.length);
+    }
+
+    @Benchmark
+    public byte[] encodePageJson() throws IOException {
+        return objectMapper.writeValueAsBytes(APIBusinessLogicResponse.success(page));
+    }
+
+    @Benchmark
+    public byte[] encodePageProtobuf() {
+        PatientPage message = PatientProtoMapper.toProto(page);
+        return message.toByteArray();
+    }
+
+    @Benchmark
+    public PatientRequestDTO decodeRequestJson() throws IOException {
+        return objectMapper.readValue(requestJson, PatientRequestDTO.class);
+    }
+
+    @Benchmark
+    public PatientRequestDTO decodeRequestProtobuf() throws InvalidProtocolBufferException {
+        return PatientProtoMapper.toDTO(PatientRequest.parseFrom(requestProtobuf));
+    }
+}
@@ -0,0 +1,131 @@
+package com.bwagih.patientservice.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the platform thread pool with the virtual thread mode (spring.threads.virtual.enabled) under load,
+ * on the blocking createPatient path: email check and insert (JPA), the outbox (kafka relay) and the billing grpc call.
+ * Not a unit test, run it manually against the local stack (loadtest/LocalPatientServiceApplication), started
+ * once per mode from the patient-service directory:
+ * <pre>
+ * ./mvnw spring-boot:test-run -Dspring-boot.run.main-class=com.bwagih.patientservice.loadtest.LocalPatientServiceApplication \
+ *     -Dspring-boot.run.jvmArguments=-Dloadtest.billing-latency-ms=20 \
+ *     -Dspring-boot.run.arguments=--spring.threads.virtual.enabled=false
+ * java -Dbenchmark.mode=platform ThreadModeBenchmark
+ *
+ * # restart the stack with --spring.threads.virtual.enabled=true
+ * java -Dbenchmark.mode=virtual ThreadModeBenchmark
+ * </pre>
+ * Every request creates a new patient (unique email per run and request), the warmup requests are not reported.
+ * Tunables: benchmark.url (default http://localhost:4000/patient/patients), benchmark.requests (default 20000),
+ * benchmark.warmup (default 2000), benchmark.concurrency (default 2000), benchmark.mode (label of the report)
+ * and benchmark.token (bearer token, when going through the gateway).
+ */
+public class ThreadModeBenchmark {
+
+    private static final String URL = System.getProperty("benchmark.url", "http://localhost:4000/patient/patients");
+    private static final int REQUESTS = Integer.getInteger("benchmark.requests", 20_000);
+    private static final int WARMUP = Integer.getInteger("benchmark.warmup", 2_000);
+    private static final int CONCURRENCY = Integer.getInteger("benchmark.concurrency", 2_000);
+    private static final String MODE = System.getProperty("benchmark.mode", "unlabeled");
+    private static final String TOKEN = System.getProperty("benchmark.token");
+
+    private static final String BODY = """
+            {"name":"Load Test %d","email":"%s-%d@loadtest.example.com","address":"123 Main St, Springfield",\
+            "dateOfBirth":"1985-06-15","registeredDate":"2024-01-01"}""";
+
+    public static void main(String[] args) throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        // emails stay unique across runs against the same database
+        String runId = UUID.randomUUID().toString().substring(0, 8);
+        AtomicInteger sequence = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+
+        BlockingCall createPatient = () -> {
+            int n = sequence.incrementAndGet();
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(URL))
+                    .timeout(Duration.ofSeconds(30))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(BODY.formatted(n, runId, n)));
+            if (TOKEN != null) {
+                builder.header("Authorization", "Bearer " + TOKEN);
+            }
+            HttpResponse<Void> response = client.send(builder.build(), HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() >= 400) {
+                errors.incrementAndGet();
+            }
+        };
+
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            System.out.printf("POST %s, %d warmup requests%n", URL, WARMUP);
+            run(callers, createPatient, WARMUP);
+            errors.set(0);
+
+            System.out.printf("POST %s, %d requests, %d concurrent callers%n", URL, REQUESTS, CONCURRENCY);
+            report(MODE, run(callers, createPatient, REQUESTS));
+            System.out.printf("  errors: %d%n", errors.get());
+        }
+    }
+
+    private interface BlockingCall {
+        void call() throws Exception;
+    }
+
+    private static Result run(ExecutorService executor, BlockingCall call, int requests) throws InterruptedException {
+        // at most CONCURRENCY requests in flight, latency is measured from submission so it includes queueing
+        Semaphore inFlight = new Semaphore(CONCURRENCY);
+        long[] latencies = new long[requests];
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(requests);
+
+        long startedAt = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            inFlight.acquire();
+            int index = i;
+            long submittedAt = System.nanoTime();
+            executor.execute(() -> {
+                try {
+                    call.call();
+                } catch (Exception e) {
+                    failures.incrementAndGet();
+                } finally {
+                    latencies[index] = System.nanoTime() - submittedAt;
+                    inFlight.release();
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        return new Result(latencies, System.nanoTime() - startedAt, failures.get());
+    }
+
+    private record Result(long[] latencies, long elapsedNanos, int failures) {
+    }
+
+    private static void report(String mode, Result result) {
+        long[] sorted = result.latencies().clone();
+        Arrays.sort(sorted);
+        List<String> percentiles = new ArrayList<>();
+        String[] labels = {"p50", "p95", "p99", "p999"};
+        double[] quantiles = {0.50, 0.95, 0.99, 0.999};
+        for (int i = 0; i < quantiles.length; i++) {
+            int index = (int) Math.min(sorted.length - 1, Math.ceil(quantiles[i] * sorted.length) - 1);
+            percentiles.add(String.format("%s=%.1fms", labels[i], sorted[Math.max(index, 0)] / 1_000_000.0));
+        }
+        System.out.printf("  %-14s throughput=%.0f req/s %s failures=%d%n", mode,
+                sorted.length / (result.elapsedNanos() / 1_000_000_000.0), String.join(" ", percentiles), result.failures());
+    }
+}
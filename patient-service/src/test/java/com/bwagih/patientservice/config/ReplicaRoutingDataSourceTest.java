@@ -0,0 +1,103 @@
+package com.bwagih.patientservice.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The replica is a separate database the update never reaches, i.e. a replica lagging behind indefinitely.
+ */
+class ReplicaRoutingDataSourceTest {
+
+    private HikariDataSource primary;
+    private HikariDataSource replica;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate writeTransaction;
+    private TransactionTemplate readOnlyTransaction;
+
+    @BeforeEach
+    void setUp() {
+        primary = database("primary");
+        replica = database("replica");
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, List.of(replica),
+                ReplicaRoutingDataSource.Selection.ROUND_ROBIN, 1000, null, new SimpleMeterRegistry());
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(routing);
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        writeTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReplicaRoutingDataSource.clearWritePin();
+        primary.close();
+        replica.close();
+    }
+
+    @Test
+    void cacheLoadAfterUpdateReadsTheUpdatedRow() {
+        updateName("After");
+
+        String name = readOnlyTransaction.execute(status -> ReplicaRoutingDataSource.readFromPrimary(this::readName));
+
+        assertThat(name).isEqualTo("After");
+    }
+
+    @Test
+    void readOnlyTransactionAfterUpdateReadsTheReplica() {
+        updateName("After");
+
+        // outside a request the write pin ended with the transaction
+        String name = readOnlyTransaction.execute(status -> readName());
+
+        assertThat(name).isEqualTo("Before");
+    }
+
+    @Test
+    void primaryReadEndsWithTheRead() {
+        String primaryName = readOnlyTransaction.execute(status -> ReplicaRoutingDataSource.readFromPrimary(() -> {
+            updatePrimaryOnly("After");
+            return readName();
+        }));
+        String name = readOnlyTransaction.execute(status -> readName());
+
+        assertThat(primaryName).isEqualTo("After");
+        assertThat(name).isEqualTo("Before");
+    }
+
+    private void updateName(String name) {
+        writeTransaction.executeWithoutResult(status -> jdbcTemplate.update("UPDATE patient SET name = ? WHERE id = 1", name));
+    }
+
+    private void updatePrimaryOnly(String name) {
+        new JdbcTemplate(primary).update("UPDATE patient SET name = ? WHERE id = 1", name);
+    }
+
+    private String readName() {
+        return jdbcTemplate.queryForObject("SELECT name FROM patient WHERE id = 1", String.class);
+    }
+
+    private static HikariDataSource database(String name) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName(name);
+        dataSource.setJdbcUrl("jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE patient (id INT PRIMARY KEY, name VARCHAR(255))");
+        jdbcTemplate.update("INSERT INTO patient (id, name) VALUES (1, 'Before')");
+        return dataSource;
+    }
+}
@@ -0,0 +1,105 @@
+package com.bwagih.patientservice.loadtest;
+
+import billing.BillingRequest;
+import billing.BillingResponse;
+import billing.BillingServiceGrpc;
+import com.bwagih.patientservice.PatientServiceApplication;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.springframework.boot.SpringApplication;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * patient-service on a fully local stack for the load test (load-test/LoadTest.java):
+ * in-memory H2 initialized from data.sql, an embedded kafka broker and an in-process stand-in for the billing grpc service.
+ * Not a unit test, start it from the patient-service directory with:
+ * <pre>
+ * ./mvnw spring-boot:test-run -Dspring-boot.run.main-class=com.bwagih.patientservice.loadtest.LocalPatientServiceApplication
+ * </pre>
+ * Tunables: loadtest.billing-port (default 9001), loadtest.billing-latency-ms (default 5, simulated billing latency)
+ * and loadtest.replicas (default 0, read replica stand-ins for the replica routing).
+ */
+public class LocalPatientServiceApplication {
+
+    private static final int BILLING_PORT = Integer.getInteger("loadtest.billing-port", 9001);
+    private static final long BILLING_LATENCY_MS = Long.getLong("loadtest.billing-latency-ms", 5);
+    private static final int REPLICAS = Integer.getInteger("loadtest.replicas", 0);
+    private static final String DATABASE_URL = "jdbc:h2:mem:patients;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    public static void main(String[] args) throws Exception {
+        // a devtools restart would run main again and start a second broker and billing stand-in
+        System.setProperty("spring.devtools.restart.enabled", "false");
+
+        EmbeddedKafkaKraftBroker kafka = new EmbeddedKafkaKraftBroker(1, 1, "patient");
+        kafka.afterPropertiesSet();
+
+        ScheduledExecutorService billingReplies = Executors.newSingleThreadScheduledExecutor();
+        Server billing = ServerBuilder.forPort(BILLING_PORT)
+                .addService(new BillingServiceStandIn(billingReplies))
+                .build()
+                .start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            billing.shutdownNow();
+            billingReplies.shutdownNow();
+            kafka.destroy();
+        }));
+
+        Map<String, String> properties = new LinkedHashMap<>(Map.of(
+                "spring.datasource.url", DATABASE_URL,
+                "spring.datasource.username", "sa",
+                "spring.datasource.password", "",
+                "spring.jpa.hibernate.ddl-auto", "none",
+                "spring.sql.init.mode", "always",
+                "spring.kafka.bootstrap-servers", kafka.getBrokersAsString(),
+                "billing.service.address", "localhost",
+                "billing.service.grpc.port", String.valueOf(BILLING_PORT),
+                // the service only calls grpc, it does not need to serve it
+                "grpc.server.port", "-1"));
+        if (REPLICAS > 0) {
+            // stand-in replicas: separate pools on the same in-memory database, so the routing runs without replication lag
+            properties.put("patient.datasource.replica-urls", String.join(",", Collections.nCopies(REPLICAS, DATABASE_URL)));
+        }
+
+        // passed as command line arguments so they take precedence over the application properties
+        String[] arguments = Stream.concat(
+                properties.entrySet().stream().map(property -> "--" + property.getKey() + "=" + property.getValue()),
+                Arrays.stream(args)).toArray(String[]::new);
+        SpringApplication.run(PatientServiceApplication.class, arguments);
+    }
+
+    /**
+     * Opens every billing account after the simulated latency, without holding a grpc thread meanwhile.
+     */
+    private static final class BillingServiceStandIn extends BillingServiceGrpc.BillingServiceImplBase {
+
+        private final ScheduledExecutorService replies;
+
+        private BillingServiceStandIn(ScheduledExecutorService replies) {
+            this.replies = replies;
+        }
+
+        @Override
+        public void createBillingAccount(BillingRequest request, StreamObserver<BillingResponse> responseObserver) {
+            BillingResponse response = BillingResponse.newBuilder()
+                    .setAccountId(UUID.randomUUID().toString())
+                    .setStatus("ACTIVE")
+                    .build();
+            replies.schedule(() -> {
+                responseObserver.onNext(response);
+                responseObserver.onCompleted();
+            }, BILLING_LATENCY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.bwagih.patientservice.service;
+
+import com.bwagih.patientservice.dto.PatientRequestDTO;
+import com.bwagih.patientservice.dto.PatientResponseDTO;
+import com.bwagih.patientservice.exception.IdempotencyKeyReusedException;
+import com.bwagih.patientservice.model.IdempotencyKey;
+import com.bwagih.patientservice.model.Patient;
+import com.bwagih.patientservice.repository.IdempotencyKeyRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class IdempotencyStoreTest {
+
+    private final IdempotencyKeyRepository repository = mock(IdempotencyKeyRepository.class);
+    private final PatientService patientService = mock(PatientService.class);
+    private final ExecutorService requests = Executors.newCachedThreadPool();
+    private final AtomicInteger creations = new AtomicInteger();
+    private IdempotencyStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new IdempotencyStore(repository, patientService, new SimpleMeterRegistry(), 100, 24);
+    }
+
+    @AfterEach
+    void tearDown() {
+        requests.shutdownNow();
+    }
+
+    @Test
+    void concurrentRequestsWithTheSameKeyCreateOnePatient() throws Exception {
+        CountDownLatch created = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PatientRequestDTO request = request("jane@example.com");
+
+        Future<IdempotencyStore.Result> first = requests.submit(() -> store.execute("key", request, onInsert -> {
+            created.countDown();
+            await(release);
+            return commit(onInsert);
+        }).get());
+        assertThat(created.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<IdempotencyStore.Result> retry = store.execute("key", request, this::commit);
+        assertThat(retry).isNotDone();
+
+        release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS).replayed()).isFalse();
+        assertThat(retry.get(5, TimeUnit.SECONDS).replayed()).isTrue();
+        assertThat(retry.get().patient().getId()).isEqualTo(first.get().patient().getId());
+        assertThat(creations).hasValue(1);
+    }
+
+    @Test
+    void keyReusedWithAnotherBodyIsRejected() throws Exception {
+        store.execute("key", request("jane@example.com"), this::commit).get();
+
+        assertThatThrownBy(() -> store.execute("key", request("john@example.com"), this::commit))
+                .isInstanceOf(IdempotencyKeyReusedException.class);
+        assertThat(creations).hasValue(1);
+    }
+
+    @Test
+    void failureBeforeTheCommitReleasesTheKey() throws Exception {
+        CompletableFuture<IdempotencyStore.Result> failed = store.execute("key", request("jane@example.com"),
+                onInsert -> CompletableFuture.failedFuture(new IllegalStateException("insert failed")));
+        assertThat(failed).isCompletedExceptionally();
+
+        IdempotencyStore.Result retry = store.execute("key", request("jane@example.com"), this::commit).get();
+
+        assertThat(retry.replayed()).isFalse();
+        assertThat(creations).hasValue(1);
+    }
+
+    @Test
+    void storedKeyReplaysTheOriginalResponseAfterThePatientWasDeleted() throws Exception {
+        store.persistent = true;
+        when(repository.findById("key")).thenReturn(Optional.empty());
+        PatientResponseDTO original = store.execute("key", request("jane@example.com"), this::commit).get().patient();
+        ArgumentCaptor<IdempotencyKey> stored = ArgumentCaptor.forClass(IdempotencyKey.class);
+        verify(repository).save(stored.capture());
+
+        // another instance, without the in-memory entry, where the patient is gone
+        IdempotencyStore otherInstance = new IdempotencyStore(repository, patientService, new SimpleMeterRegistry(), 100, 24);
+        otherInstance.persistent = true;
+        when(repository.findById("key")).thenReturn(Optional.of(stored.getValue()));
+
+        IdempotencyStore.Result replayed = otherInstance.execute("key", request("jane@example.com"), this::commit).get();
+
+        assertThat(replayed.replayed()).isTrue();
+        assertThat(replayed.patient().getId()).isEqualTo(original.getId());
+        assertThat(replayed.patient().getEmail()).isEqualTo("jane@example.com");
+        assertThat(replayed.patient().getVersion()).isEqualTo(original.getVersion());
+        verify(patientService, never()).getPatientById(any());
+        assertThat(creations).hasValue(1);
+    }
+
+    /**
+     * Creates the patient the way {@link PatientService#createPatient} does: the callback runs in the insert
+     * transaction, the response completes after the commit.
+     */
+    private CompletableFuture<PatientResponseDTO> commit(Consumer<Patient> onInsert) {
+        creations.incrementAndGet();
+        Patient patient = new Patient();
+        patient.setId(UUID.randomUUID());
+        patient.setName("Jane Doe");
+        patient.setEmail("jane@example.com");
+        patient.setAddress("1 Main St");
+        patient.setDateOfBirth(LocalDate.of(1985, 6, 15));
+        patient.setVersion(0);
+
+        TransactionSynchronizationManager.initSynchronization();
+        List<TransactionSynchronization> synchronizations;
+        try {
+            onInsert.accept(patient);
+            synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+
+        PatientResponseDTO response = new PatientResponseDTO(patient.getId().toString(), patient.getName(), patient.getEmail(),
+                patient.getAddress(), patient.getDateOfBirth().toString(), patient.getVersion());
+        return CompletableFuture.completedFuture(response);
+    }
+
+    private static PatientRequestDTO request(String email) {
+        return PatientRequestDTO.builder()
+                .name("Jane Doe")
+                .email(email)
+                .address("1 Main St")
+                .dateOfBirth("1985-06-15")
+                .registeredDate("2024-01-01")
+                .build();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
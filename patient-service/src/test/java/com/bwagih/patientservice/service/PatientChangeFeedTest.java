@@ -0,0 +1,141 @@
+package com.bwagih.patientservice.service;
+
+import com.bwagih.patientservice.dto.PatientChangeDTO;
+import com.bwagih.patientservice.model.Patient;
+import com.bwagih.patientservice.model.PatientChange;
+import com.bwagih.patientservice.repository.PatientChangeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Transactions are simulated by running record with the transaction synchronization active and completing the
+ * registered synchronizations afterwards, the sequence numbers are assigned per patient by the mocked repository.
+ */
+class PatientChangeFeedTest {
+
+    private final Map<UUID, Long> sequences = new ConcurrentHashMap<>();
+    private final Map<UUID, CountDownLatch> sequenceFetches = new ConcurrentHashMap<>();
+    private final CountDownLatch fetching = new CountDownLatch(1);
+    private final ExecutorService writers = Executors.newCachedThreadPool();
+    private PatientChangeFeed feed;
+
+    @BeforeEach
+    void setUp() {
+        PatientChangeRepository repository = mock(PatientChangeRepository.class);
+        when(repository.save(any(PatientChange.class))).thenAnswer(invocation -> {
+            PatientChange change = invocation.getArgument(0);
+            CountDownLatch fetch = sequenceFetches.get(change.getPatientId());
+            if (fetch != null) {
+                fetching.countDown();
+                fetch.await();
+            }
+            change.setId(sequences.get(change.getPatientId()));
+            return change;
+        });
+        feed = new PatientChangeFeed(repository, mock(PlatformTransactionManager.class), new SimpleMeterRegistry(), 100, 1, false);
+        feed.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        writers.shutdownNow();
+        feed.shutdown();
+    }
+
+    @Test
+    void changeCommittedAheadOfALowerSequenceWaitsForIt() {
+        List<TransactionSynchronization> first = record(patient(1));
+        List<TransactionSynchronization> second = record(patient(2));
+
+        commit(second);
+        assertThat(feed.lastSequence()).isZero();
+        assertThat(feed.readAfter(0, 10)).isEmpty();
+
+        commit(first);
+        assertThat(sequencesAfter(0)).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void rolledBackChangeReleasesTheChangesAfterIt() {
+        List<TransactionSynchronization> first = record(patient(1));
+        List<TransactionSynchronization> second = record(patient(2));
+
+        commit(second);
+        rollback(first);
+
+        assertThat(sequencesAfter(0)).containsExactly(2L);
+    }
+
+    @Test
+    void writerFetchingItsSequenceHoldsBackTheChangesRegisteredMeanwhile() throws Exception {
+        Patient slow = patient(1);
+        CountDownLatch fetch = new CountDownLatch(1);
+        sequenceFetches.put(slow.getId(), fetch);
+        Future<List<TransactionSynchronization>> slowTransaction = writers.submit(() -> record(slow));
+        assertThat(fetching.await(5, TimeUnit.SECONDS)).isTrue();
+
+        commit(record(patient(2)));
+        assertThat(feed.readAfter(0, 10)).isEmpty();
+
+        fetch.countDown();
+        List<TransactionSynchronization> first = slowTransaction.get(5, TimeUnit.SECONDS);
+        assertThat(feed.readAfter(0, 10)).isEmpty();
+
+        commit(first);
+        assertThat(sequencesAfter(0)).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void resumesAfterTheGivenSequence() {
+        for (long sequence = 1; sequence <= 5; sequence++) {
+            commit(record(patient(sequence)));
+        }
+
+        assertThat(sequencesAfter(3)).containsExactly(4L, 5L);
+        assertThat(feed.lastSequence()).isEqualTo(5);
+    }
+
+    private Patient patient(long sequence) {
+        Patient patient = new Patient();
+        patient.setId(UUID.randomUUID());
+        sequences.put(patient.getId(), sequence);
+        return patient;
+    }
+
+    private List<TransactionSynchronization> record(Patient patient) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            feed.record(patient, PatientChange.Type.CREATED);
+            return TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static void commit(List<TransactionSynchronization> transaction) {
+        transaction.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+    }
+
+    private static void rollback(List<TransactionSynchronization> transaction) {
+        transaction.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+    }
+
+    private List<Long> sequencesAfter(long after) {
+        return feed.readAfter(after, 10).stream().map(PatientChangeDTO::sequence).toList();
+    }
+}
@@ -0,0 +1,162 @@
+package com.bwagih.patientservice.service;
+
+import com.bwagih.patientservice.repository.PatientRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The mocked repository streams a snapshot of the committed emails once the test lets it, so inserts run while the
+ * rebuild is between its start and the swap. An insert is simulated the way PatientService runs it: the email is put
+ * inside the transaction, becomes visible to the stream on commit and the synchronizations complete afterwards.
+ */
+class PatientEmailFilterTest {
+
+    private final Set<String> committed = ConcurrentHashMap.newKeySet();
+    private final ExecutorService writers = Executors.newCachedThreadPool();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private volatile CountDownLatch streaming = new CountDownLatch(1);
+    private volatile CountDownLatch resume = new CountDownLatch(0);
+    private PatientEmailFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        PatientRepository repository = mock(PatientRepository.class);
+        when(repository.count()).thenReturn(0L);
+        when(repository.streamAllEmails()).thenAnswer(invocation -> {
+            streaming.countDown();
+            resume.await();
+            return List.copyOf(committed).stream();
+        });
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+
+        filter = new PatientEmailFilter(repository, transactionManager, meterRegistry, false);
+        filter.expectedInsertions = 100_000;
+        filter.fpp = 0.01;
+        filter.maxStaleRatio = 0.1;
+    }
+
+    @AfterEach
+    void tearDown() {
+        writers.shutdownNow();
+        filter.shutdown();
+    }
+
+    @Test
+    void emailOfATransactionRunningWhenTheRebuildStartsIsKept() throws Exception {
+        rebuildAndWait();
+        List<TransactionSynchronization> running = insertUncommitted("running@example.com");
+
+        resume = new CountDownLatch(1);
+        streaming = new CountDownLatch(1);
+        double previousMemory = memory();
+        filter.expectedInsertions = 200_000;
+        startRebuild();
+        // commits after the stream took its snapshot
+        commit("running@example.com", running);
+        resume.countDown();
+        awaitSwap(previousMemory);
+
+        assertThat(filter.mightContain("running@example.com")).isTrue();
+    }
+
+    @Test
+    void noInsertIsLostWhileTheFilterIsRebuilt() throws Exception {
+        rebuildAndWait();
+
+        AtomicBoolean stop = new AtomicBoolean();
+        List<Future<List<String>>> inserted = new ArrayList<>();
+        for (int writer = 0; writer < 4; writer++) {
+            int writerId = writer;
+            inserted.add(writers.submit(() -> {
+                List<String> emails = new ArrayList<>();
+                for (int i = 0; !stop.get() || i < 100; i++) {
+                    String email = "writer" + writerId + "-" + i + "@example.com";
+                    commit(email, insertUncommitted(email));
+                    emails.add(email);
+                }
+                return emails;
+            }));
+        }
+
+        resume = new CountDownLatch(1);
+        streaming = new CountDownLatch(1);
+        double previousMemory = memory();
+        filter.expectedInsertions = 200_000;
+        startRebuild();
+        Thread.sleep(20);
+        resume.countDown();
+        awaitSwap(previousMemory);
+        stop.set(true);
+
+        for (Future<List<String>> writer : inserted) {
+            for (String email : writer.get(5, TimeUnit.SECONDS)) {
+                assertThat(filter.mightContain(email)).as(email).isTrue();
+            }
+        }
+    }
+
+    private void rebuildAndWait() throws InterruptedException {
+        filter.rebuildAsync();
+        awaitSwap(memory());
+    }
+
+    // a rebuild that just swapped its filter in may not have released the rebuilding flag yet
+    private void startRebuild() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        do {
+            if (System.nanoTime() > deadline) {
+                fail("the rebuild did not start");
+            }
+            filter.rebuildAsync();
+        } while (!streaming.await(5, TimeUnit.MILLISECONDS));
+    }
+
+    private List<TransactionSynchronization> insertUncommitted(String email) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            filter.put(email);
+            return TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private void commit(String email, List<TransactionSynchronization> synchronizations) {
+        committed.add(email);
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+    }
+
+    // the memory gauge changes once the rebuilt filter (sized for other expected insertions) is swapped in
+    private void awaitSwap(double previousMemory) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (memory() == previousMemory) {
+            if (System.nanoTime() > deadline) {
+                fail("the rebuilt filter was not swapped in");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private double memory() {
+        return meterRegistry.get("patient.email.filter.memory").gauge().value();
+    }
+}
@@ -0,0 +1,65 @@
+package com.bwagih.patientservice.service;
+
+import com.bwagih.patientservice.dto.PatientResponseDTO;
+import com.bwagih.patientservice.model.Patient;
+import com.bwagih.patientservice.repository.PatientRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class PatientSearchIndexTest {
+
+    private PatientSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new PatientSearchIndex(mock(PatientRepository.class), false);
+        index.minSimilarity = 0.6;
+    }
+
+    @AfterEach
+    void tearDown() {
+        index.shutdown();
+    }
+
+    @Test
+    void olderVersionIndexedLateDoesNotReplaceTheNewerOne() {
+        UUID id = UUID.randomUUID();
+
+        index.index(patient(id, "Margaret Thatcher", 2));
+        index.index(patient(id, "Margaret Hamilton", 1));
+
+        assertThat(index.search("thatcher", 0, 10).getContent())
+                .extracting(PatientResponseDTO::getVersion)
+                .containsExactly(2L);
+        assertThat(index.search("hamilton", 0, 10).getContent()).isEmpty();
+    }
+
+    @Test
+    void changeIndexedAfterTheDeleteDoesNotBringThePatientBack() {
+        UUID id = UUID.randomUUID();
+        index.index(patient(id, "Margaret Hamilton", 1));
+
+        index.remove(id);
+        index.index(patient(id, "Margaret Hamilton", 2));
+
+        assertThat(index.search("hamilton", 0, 10).getContent()).isEmpty();
+    }
+
+    private static Patient patient(UUID id, String name, long version) {
+        Patient patient = new Patient();
+        patient.setId(id);
+        patient.setName(name);
+        patient.setEmail(id + "@example.com");
+        patient.setAddress("1 Main St");
+        patient.setDateOfBirth(LocalDate.of(1985, 6, 15));
+        patient.setVersion(version);
+        return patient;
+    }
+}
@@ -0,0 +1,43 @@
+package com.bwagih.patientservice.utils;
+
+import com.bwagih.patientservice.exception.InvalidCursorException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PatientCursorTest {
+
+    @Test
+    void decodeReturnsTheEncodedPosition() {
+        PatientCursor cursor = new PatientCursor(LocalDate.of(2024, 2, 29), UUID.randomUUID());
+
+        String token = cursor.encode();
+
+        assertThat(token).matches("[A-Za-z0-9_-]+");
+        assertThat(PatientCursor.decode(token)).isEqualTo(cursor);
+    }
+
+    @Test
+    void tamperedTokenIsRejected() {
+        String token = new PatientCursor(LocalDate.of(2024, 2, 29), UUID.randomUUID()).encode();
+
+        assertThatThrownBy(() -> PatientCursor.decode(token + "!"))
+                .isInstanceOf(InvalidCursorException.class);
+        assertThatThrownBy(() -> PatientCursor.decode(encode("2024-02-30|" + UUID.randomUUID())))
+                .isInstanceOf(InvalidCursorException.class);
+        assertThatThrownBy(() -> PatientCursor.decode(encode("2024-02-29|not-a-uuid")))
+                .isInstanceOf(InvalidCursorException.class);
+        assertThatThrownBy(() -> PatientCursor.decode(encode("2024-02-29")))
+                .isInstanceOf(InvalidCursorException.class);
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
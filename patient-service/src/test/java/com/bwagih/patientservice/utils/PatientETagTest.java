@@ -0,0 +1,42 @@
+package com.bwagih.patientservice.utils;
+
+import com.bwagih.patientservice.dto.PatientResponseDTO;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PatientETagTest {
+
+    @Test
+    void everyRepresentationHasItsOwnTag() {
+        PatientResponseDTO patient = patient(7);
+
+        assertThat(PatientETag.of(patient)).isEqualTo("\"7\"");
+        assertThat(PatientETag.ofGzip(patient)).isEqualTo("\"7-gz\"");
+        assertThat(PatientETag.ofProtobuf(patient)).isEqualTo("\"7-pb\"");
+    }
+
+    @Test
+    void ifMatchAcceptsTheTagOfAnyRepresentation() {
+        PatientResponseDTO patient = patient(7);
+
+        assertThat(PatientETag.parseIfMatch(PatientETag.of(patient))).isEqualTo(7L);
+        assertThat(PatientETag.parseIfMatch(PatientETag.ofGzip(patient))).isEqualTo(7L);
+        assertThat(PatientETag.parseIfMatch(PatientETag.ofProtobuf(patient))).isEqualTo(7L);
+    }
+
+    @Test
+    void ifNoneMatchUsesTheWeakComparison() {
+        assertThat(PatientETag.matchesIfNoneMatch("W/\"7-gz\"", "\"7-gz\"")).isTrue();
+        assertThat(PatientETag.matchesIfNoneMatch("\"6\", \"7\"", "\"7\"")).isTrue();
+        assertThat(PatientETag.matchesIfNoneMatch("*", "\"7\"")).isTrue();
+        assertThat(PatientETag.matchesIfNoneMatch("\"7\"", "\"7-gz\"")).isFalse();
+        assertThat(PatientETag.matchesIfNoneMatch(null, "\"7\"")).isFalse();
+    }
+
+    private static PatientResponseDTO patient(long version) {
+        PatientResponseDTO patient = new PatientResponseDTO();
+        patient.setVersion(version);
+        return patient;
+    }
+}
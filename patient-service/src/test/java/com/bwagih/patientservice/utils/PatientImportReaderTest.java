@@ -0,0 +1,78 @@
+package com.bwagih.patientservice.utils;
+
+import com.bwagih.patientservice.dto.PatientImportRow;
+import com.bwagih.patientservice.exception.InvalidImportFileException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PatientImportReaderTest {
+
+    private static final String CSV_HEADER = "name,email,address,dateOfBirth,registeredDate\n";
+
+    @Test
+    void csvQuotedFieldSpansLines() throws IOException {
+        try (PatientImportReader reader = PatientImportReader.csv(input(CSV_HEADER
+                + "\"Jane \"\"J\"\" Doe\",jane@example.com,\"1 Main St\nApt 2\",1985-06-15,2024-01-01\n"
+                + "John Doe,john@example.com,2 Main St,1985-06-15,2024-01-01\n"))) {
+            PatientImportRow first = reader.next();
+            PatientImportRow second = reader.next();
+
+            assertThat(first.rowNumber()).isEqualTo(1);
+            assertThat(first.patient().getName()).isEqualTo("Jane \"J\" Doe");
+            assertThat(first.patient().getAddress()).isEqualTo("1 Main St\nApt 2");
+            assertThat(second.rowNumber()).isEqualTo(2);
+            assertThat(second.patient().getEmail()).isEqualTo("john@example.com");
+            assertThat(reader.hasNext()).isFalse();
+        }
+    }
+
+    @Test
+    void csvUnterminatedQuoteFailsTheFile() throws IOException {
+        try (PatientImportReader reader = PatientImportReader.csv(input(CSV_HEADER
+                + "Jane Doe,jane@example.com,1 Main St,1985-06-15,2024-01-01\n"
+                + "\"John Doe,john@example.com,2 Main St,1985-06-15,2024-01-01\n"))) {
+            assertThat(reader.next().patient().getEmail()).isEqualTo("jane@example.com");
+
+            assertThatThrownBy(reader::hasNext)
+                    .isInstanceOf(InvalidImportFileException.class)
+                    .hasMessageContaining("row 2");
+        }
+    }
+
+    @Test
+    void jsonValueOfTheWrongTypeFailsOnlyItsRow() throws IOException {
+        try (PatientImportReader reader = PatientImportReader.json(new ObjectMapper(), input("""
+                [{"name": {"first": "Jane"}, "email": "jane@example.com"},
+                 {"name": "John Doe", "email": "john@example.com"}]"""))) {
+            PatientImportRow first = reader.next();
+            PatientImportRow second = reader.next();
+
+            assertThat(first.patient()).isNull();
+            assertThat(first.error()).isEqualTo("Invalid value for field: name");
+            assertThat(second.patient().getEmail()).isEqualTo("john@example.com");
+            assertThat(reader.hasNext()).isFalse();
+        }
+    }
+
+    @Test
+    void malformedJsonFailsTheFile() throws IOException {
+        try (PatientImportReader reader = PatientImportReader.json(new ObjectMapper(), input("""
+                [{"name": "Jane Doe", "email": "jane@example.com"},
+                 {"name": "John Doe", "email": """))) {
+            assertThat(reader.next().patient().getEmail()).isEqualTo("jane@example.com");
+
+            assertThatThrownBy(reader::hasNext).isInstanceOf(InvalidImportFileException.class);
+        }
+    }
+
+    private static ByteArrayInputStream input(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,48 @@
+package com.bwagih.patientservice.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class UuidV7Test {
+
+    @Test
+    void idsGeneratedInTheSameMillisecondKeepTheirOrder() {
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            ids.add(UuidV7.randomUUID());
+        }
+
+        int sameMillisecond = 0;
+        for (int i = 1; i < ids.size(); i++) {
+            UUID previous = ids.get(i - 1);
+            UUID next = ids.get(i);
+            assertThat(Long.compareUnsigned(previous.getMostSignificantBits(), next.getMostSignificantBits()))
+                    .as("%s before %s", previous, next)
+                    .isNegative();
+            if (timestamp(previous) == timestamp(next)) {
+                sameMillisecond++;
+            }
+        }
+        // the loop is fast enough that most ids share their millisecond with the previous one
+        assertThat(sameMillisecond).isPositive();
+    }
+
+    @Test
+    void versionAndVariantFollowRfc9562() {
+        UUID id = UuidV7.randomUUID();
+
+        assertThat(id.version()).isEqualTo(7);
+        assertThat(id.variant()).isEqualTo(2);
+        assertThat(timestamp(id)).isCloseTo(System.currentTimeMillis(), within(1000L));
+    }
+
+    private static long timestamp(UUID id) {
+        return id.getMostSignificantBits() >>> 16;
+    }
+}